@@ -0,0 +1,106 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kawa.util.Util;
+
+/**
+ * Compares the ways of getting at the WCA database .zip file, against a zipped {@link Fixture} export:<br><br>
+ *
+ * <code>unzipFile</code> is the original {@link Util#unzipFile(File, File)}, which extracts every entry through a stream.<br>
+ * <code>unzipParallel</code> is {@link Util#unzipFile(File, File, Predicate, int)}, which extracts the entries at the same time.<br>
+ * <code>loadIndexFromArchive</code> reads the index straight out of the .zip file without extracting anything.<br><br>
+ *
+ * The extracted files are deleted before each call, so every call extracts everything.
+ * @author Kawa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark
+{
+	/**
+	 * The amount of competitors in the export.
+	 */
+	@Param({"10000", "100000"})
+	public int exportSize;
+
+	/**
+	 * The amount of competitors in the roster.
+	 */
+	@Param({"1000"})
+	public int rosterSize;
+
+	private Fixture fixture;
+	private File archive;
+	private File output;
+	private String[] roster;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		fixture = Fixture.create(exportSize, 42);
+		archive = fixture.zip();
+		output = new File(fixture.dir, "exports");
+		roster = fixture.roster(rosterSize);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearOutput()
+	{
+		Fixture.delete(output);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		fixture.delete();
+	}
+
+	@Benchmark
+	public File unzipFile()
+	{
+		Util.unzipFile(archive, output);
+		return output;
+	}
+
+	@Benchmark
+	public File unzipParallel() throws IOException
+	{
+		output.mkdir();
+		Util.unzipFile(archive, output, new Predicate<String>() {
+			@Override
+			public boolean test(String name)
+			{
+				return true;
+			}
+		}, 2);
+		return output;
+	}
+
+	@Benchmark
+	public RanksIndex loadIndexFromArchive() throws IOException
+	{
+		return Parser.loadIndexFromArchive(archive, roster, 1);
+	}
+}
@@ -0,0 +1,21 @@
+package com.kawa.kinch;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with JMH's GC profiler, so that every result comes with its allocation rate (<code>gc.alloc.rate.norm</code> is the
+ * bytes allocated per call). The arguments are the same as JMH's own, such as a pattern to only run some benchmarks, or <code>-p size=10000</code>
+ * to only run some sizes.
+ * @author Kawa
+ */
+public class Benchmarks
+{
+	public static void main(String[] args) throws Exception
+	{
+		CommandLineOptions options = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,423 @@
+package com.kawa.kinch;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes made-up WCA exports that look like the real one, for benchmarking the whole program at sizes the WCA hasn't reached yet. The same
+ * sizes and seed always give the same export.<br><br>
+ *
+ * The .zip file has the same entries and columns as the real export:<br><br>
+ *
+ * <code>WCA_export_RanksAverage.tsv, WCA_export_RanksSingle.tsv</code>: <code>personId, eventId, best, worldRank, continentRank, countryRank</code><br>
+ * <code>WCA_export_Persons.tsv</code>: <code>id, subid, name, countryId, gender</code><br>
+ * <code>WCA_export_Countries.tsv</code>: <code>id, name, continentId, iso2</code><br><br>
+ *
+ * Competitors are spread over countries like the real ones are, with a few large countries and many small ones. Each event is done by about
+ * as many of them as it is in the real export, 3x3 by nearly everyone and the big blind events by very few, and its results are spread
+ * around a typical result for the event. Each event's rows are sorted by result, and competitors with the same result share a ranking. MBLD
+ * results are written in the current format. Events past the 18 used for KinchRanks are written too, with made-up names, and are skipped
+ * when the export is read.<br><br>
+ *
+ * <code>java com.kawa.kinch.ExportGenerator [.zip file] [competitors] [events (optional, default 18)] [roster size (optional, default 1000)]
+ * [seed (optional, default 42)]</code><br><br>
+ *
+ * writes the export and a WCA ID file of that many of its competitors next to it.
+ * @author Kawa
+ */
+public class ExportGenerator
+{
+	/**
+	 * The events used for KinchRanks, in their column order.
+	 */
+	private static final String[] EVENTS = {"222", "333", "444", "555", "666", "777", "333oh", "333ft", "333fm", "minx", "pyram", "sq1", "clock", "skewb", "333bf", "444bf", "555bf", "333mbf"};
+
+	/**
+	 * The percentage of competitors who have done each event.
+	 */
+	private static final int[] PARTICIPATION = {75, 98, 45, 30, 12, 10, 45, 3, 10, 12, 60, 20, 15, 45, 15, 3, 2, 4};
+
+	/**
+	 * The typical single of each event, in centiseconds (moves for 333fm).
+	 */
+	private static final int[] TYPICAL = {700, 2000, 7000, 12000, 24000, 36000, 4000, 15000, 38, 15000, 1000, 3500, 2000, 1200, 18000, 90000, 180000, 0};
+
+	private static final String[] CONTINENTS = {"_Africa", "_Asia", "_Europe", "_North America", "_Oceania", "_South America"};
+
+	private static final int COUNTRIES = 150;
+
+	private final int persons;
+	private final int events;
+	private final long seed;
+
+	/**
+	 * The country of each competitor.
+	 */
+	private final short[] countryOf;
+
+	/**
+	 * The amount of rows in each ranks file, once they have been written.
+	 */
+	private long averageRows;
+	private long singleRows;
+
+	/**
+	 * @param persons The amount of competitors.
+	 * @param events The amount of events. The first 18 are the events used for KinchRanks.
+	 * @param seed The seed of the results.
+	 */
+	public ExportGenerator(int persons, int events, long seed)
+	{
+		this.persons = persons;
+		this.events = events;
+		this.seed = seed;
+
+		// a few countries with most of the competitors, like the real export
+		Random random = new Random(seed);
+		double[] weights = new double[COUNTRIES];
+		double total = 0.0;
+		for(int country = 0; country < COUNTRIES; country++)
+			total += weights[country] = 1.0 / Math.pow(country + 1, 1.1);
+		countryOf = new short[persons];
+		for(int i = 0; i < persons; i++)
+		{
+			double pick = random.nextDouble() * total;
+			int country = 0;
+			while(country < COUNTRIES - 1 && (pick -= weights[country]) > 0)
+				country++;
+			countryOf[i] = (short) country;
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		File archive = new File(args[0]);
+		int persons = Integer.parseInt(args[1]);
+		int events = args.length > 2 ? Integer.parseInt(args[2]) : EVENTS.length;
+		int rosterSize = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+		long start = System.nanoTime();
+		ExportGenerator generator = new ExportGenerator(persons, events, seed);
+		generator.writeArchive(archive);
+		File roster = generator.writeRoster(new File(archive.getAbsoluteFile().getParentFile(), "roster-" + rosterSize + ".txt"), rosterSize);
+		System.out.println("> Wrote " + archive + " (" + generator.averageRows + " averages, " + generator.singleRows + " singles, "
+				+ archive.length() / 1048576 + " MB) and " + roster + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	/**
+	 * Writes the export as a .zip file.
+	 * @param archive The .zip file.
+	 * @throws IOException
+	 */
+	public void writeArchive(File archive) throws IOException
+	{
+		try(ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), 1 << 16)))
+		{
+			// the inflating speed of the entries doesn't depend on how hard they were deflated
+			zip.setLevel(Deflater.BEST_SPEED);
+			Writer out = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+			zip.putNextEntry(new ZipEntry(Parser.ENTRY_AVERAGE));
+			averageRows = writeRanks(out, true);
+			out.flush();
+			zip.closeEntry();
+
+			zip.putNextEntry(new ZipEntry(Parser.ENTRY_SINGLE));
+			singleRows = writeRanks(out, false);
+			out.flush();
+			zip.closeEntry();
+
+			zip.putNextEntry(new ZipEntry(Parser.ENTRY_PERSONS));
+			writePersons(out);
+			out.flush();
+			zip.closeEntry();
+
+			zip.putNextEntry(new ZipEntry(Parser.ENTRY_COUNTRIES));
+			writeCountries(out);
+			out.flush();
+			zip.closeEntry();
+		}
+	}
+
+	/**
+	 * Writes the Average and Single files, without zipping them.
+	 * @param average The Average file.
+	 * @param single The Single file.
+	 * @throws IOException
+	 */
+	public void writeRanks(File average, File single) throws IOException
+	{
+		try(Writer out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(average), 1 << 16), StandardCharsets.UTF_8))
+		{
+			averageRows = writeRanks(out, true);
+		}
+		try(Writer out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(single), 1 << 16), StandardCharsets.UTF_8))
+		{
+			singleRows = writeRanks(out, false);
+		}
+	}
+
+	/**
+	 * Writes a ranks file. Every event's results are made from the same seed for both files, so each competitor's single is never worse
+	 * than their average, and everyone with an average has a single.
+	 * @return The amount of rows.
+	 */
+	private long writeRanks(Writer out, boolean average) throws IOException
+	{
+		out.write("personId\teventId\tbest\tworldRank\tcontinentRank\tcountryRank\n");
+		long[] rows = new long[persons];
+		int[] continentCount = new int[CONTINENTS.length];
+		int[] continentRank = new int[CONTINENTS.length];
+		long[] continentLast = new long[CONTINENTS.length];
+		int[] countryCount = new int[COUNTRIES];
+		int[] countryRank = new int[COUNTRIES];
+		long[] countryLast = new long[COUNTRIES];
+		char[] line = new char[128];
+		long written = 0;
+
+		for(int event = 0; event < events; event++)
+		{
+			boolean mbld = event < EVENTS.length && EVENTS[event].equals("333mbf");
+			if(average && (mbld || event >= EVENTS.length && event % 2 == 0))
+				continue;
+
+			Random random = new Random(seed * 31 + event);
+			int participation = event < EVENTS.length ? PARTICIPATION[event] : 5;
+			int typical = event < EVENTS.length ? TYPICAL[event] : 3000;
+			int count = 0;
+			for(int i = 0; i < persons; i++)
+			{
+				if(random.nextInt(100) >= participation)
+					continue;
+				// a competitor without an average still has a single a quarter of the time
+				boolean hasAverage = random.nextInt(4) != 0;
+				long single = mbld ? mbld(random) : result(random, typical);
+				long result = single;
+				if(!mbld)
+				{
+					long slower = (long) (single * (1.05 + random.nextDouble() * 0.3));
+					if(average)
+						result = slower;
+				}
+				if(average && !hasAverage)
+					continue;
+				// the result in the top bits and the competitor in the bottom, so sorting sorts by result
+				rows[count++] = result << 32 | i;
+			}
+			Arrays.sort(rows, 0, count);
+
+			String eventId = event < EVENTS.length ? EVENTS[event] : "ev" + (event + 1);
+			Arrays.fill(continentCount, 0);
+			Arrays.fill(countryCount, 0);
+			int worldRank = 0;
+			long last = -1;
+			for(int rank = 0; rank < count; rank++)
+			{
+				long result = rows[rank] >>> 32;
+				int person = (int) rows[rank];
+				int country = countryOf[person];
+				int continent = continentOf(country);
+				if(result != last)
+					worldRank = rank + 1;
+				last = result;
+				continentCount[continent]++;
+				if(continentCount[continent] == 1 || result != continentLast[continent])
+					continentRank[continent] = continentCount[continent];
+				continentLast[continent] = result;
+				countryCount[country]++;
+				if(countryCount[country] == 1 || result != countryLast[country])
+					countryRank[country] = countryCount[country];
+				countryLast[country] = result;
+
+				int length = wcaId(person, line, 0);
+				line[length++] = '\t';
+				eventId.getChars(0, eventId.length(), line, length);
+				length += eventId.length();
+				line[length++] = '\t';
+				length = append(result, line, length);
+				line[length++] = '\t';
+				length = append(worldRank, line, length);
+				line[length++] = '\t';
+				length = append(continentRank[continent], line, length);
+				line[length++] = '\t';
+				length = append(countryRank[country], line, length);
+				line[length++] = '\n';
+				out.write(line, 0, length);
+			}
+			written += count;
+		}
+		return written;
+	}
+
+	/**
+	 * Makes a result spread around the typical result of an event, a few times faster at best.
+	 */
+	private static long result(Random random, int typical)
+	{
+		double spread = Math.exp(random.nextGaussian() * 0.45);
+		return Math.max(typical / 4, (long) (typical * spread));
+	}
+
+	/**
+	 * Makes an MBLD result in the current format, <code>0DDTTTTTMM</code>, where a lower value is a better result.
+	 */
+	private static long mbld(Random random)
+	{
+		int difference = 1 + (int) Math.min(60, Math.abs(random.nextGaussian()) * 8);
+		int seconds = Math.min(3600, 300 + difference * 60 + random.nextInt(1200));
+		return (99L - difference) * 10000000L + seconds * 100L + random.nextInt(3);
+	}
+
+	private static int continentOf(int country)
+	{
+		return country % CONTINENTS.length;
+	}
+
+	private void writePersons(Writer out) throws IOException
+	{
+		out.write("id\tsubid\tname\tcountryId\tgender\n");
+		char[] line = new char[128];
+		for(int i = 0; i < persons; i++)
+		{
+			int length = wcaId(i, line, 0);
+			String rest = "\t1\tCompetitor " + i + "\t" + countryId(countryOf[i]) + "\t" + (i % 3 == 0 ? "f" : "m") + "\n";
+			rest.getChars(0, rest.length(), line, length);
+			out.write(line, 0, length + rest.length());
+		}
+	}
+
+	private void writeCountries(Writer out) throws IOException
+	{
+		out.write("id\tname\tcontinentId\tiso2\n");
+		for(int country = 0; country < COUNTRIES; country++)
+			out.write(countryId(country) + "\tCountry " + country + "\t" + CONTINENTS[continentOf(country)] + "\t" + iso2(country) + "\n");
+	}
+
+	private static String countryId(int country)
+	{
+		return "Country" + country;
+	}
+
+	private static String iso2(int country)
+	{
+		return "" + (char) ('A' + country / 26) + (char) ('A' + country % 26);
+	}
+
+	/**
+	 * Writes the WCA ID of a competitor from their number. Every number up to 100 * 26<sup>4</sup> gets its own.
+	 * @return The position after the WCA ID.
+	 */
+	private static int wcaId(int number, char[] out, int offset)
+	{
+		int year = 2003 + number % 20;
+		int letters = number / 100;
+		out[offset] = (char) ('0' + year / 1000);
+		out[offset + 1] = (char) ('0' + year / 100 % 10);
+		out[offset + 2] = (char) ('0' + year / 10 % 10);
+		out[offset + 3] = (char) ('0' + year % 10);
+		for(int i = offset + 7; i >= offset + 4; i--)
+		{
+			out[i] = (char) ('A' + letters % 26);
+			letters /= 26;
+		}
+		out[offset + 8] = (char) ('0' + number / 10 % 10);
+		out[offset + 9] = (char) ('0' + number % 10);
+		return offset + 10;
+	}
+
+	/**
+	 * @param number A competitor's number.
+	 * @return Their WCA ID.
+	 */
+	public static String wcaId(int number)
+	{
+		char[] id = new char[10];
+		wcaId(number, id, 0);
+		return new String(id);
+	}
+
+	private static int append(long value, char[] out, int offset)
+	{
+		int length = 1;
+		for(long rest = value / 10; rest != 0; rest /= 10)
+			length++;
+		for(int i = offset + length - 1; i >= offset; i--)
+		{
+			out[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + length;
+	}
+
+	/**
+	 * Picks a roster, the same one for the same size and seed.
+	 * @param size The amount of competitors, at most every competitor.
+	 * @return Their WCA IDs.
+	 */
+	public String[] roster(int size)
+	{
+		size = Math.min(size, persons);
+		String[] roster = new String[size];
+		// every competitor once, in an order that depends on the seed, from a full-period step through the numbers
+		long step = 1 + new Random(seed).nextInt(Math.max(1, persons - 1));
+		while(gcd(step, persons) != 1)
+			step++;
+		long person = 0;
+		for(int i = 0; i < size; i++)
+		{
+			roster[i] = wcaId((int) person);
+			person = (person + step) % persons;
+		}
+		return roster;
+	}
+
+	private static long gcd(long a, long b)
+	{
+		return b == 0 ? a : gcd(b, a % b);
+	}
+
+	/**
+	 * Writes a roster to a WCA ID file.
+	 * @param file The file.
+	 * @param size The amount of competitors.
+	 * @return The file.
+	 * @throws IOException
+	 */
+	public File writeRoster(File file, int size) throws IOException
+	{
+		try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
+		{
+			for(String id : roster(size))
+				out.write(id + "\n");
+		}
+		return file;
+	}
+
+	/**
+	 * @return The amount of rows in both ranks files, once they have been written.
+	 */
+	public long getRows()
+	{
+		return averageRows + singleRows;
+	}
+
+	/**
+	 * @return The amount of competitors.
+	 */
+	public int getPersons()
+	{
+		return persons;
+	}
+}
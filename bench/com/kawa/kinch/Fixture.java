@@ -0,0 +1,110 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A fixed, made-up WCA export in a temporary folder for the microbenchmarks, written by {@link ExportGenerator}, so that every run reads the
+ * same files.
+ * @author Kawa
+ */
+final class Fixture
+{
+	final File dir;
+	final File average;
+	final File single;
+	private final ExportGenerator generator;
+
+	private Fixture(File dir, ExportGenerator generator)
+	{
+		this.dir = dir;
+		this.average = new File(dir, Parser.ENTRY_AVERAGE);
+		this.single = new File(dir, Parser.ENTRY_SINGLE);
+		this.generator = generator;
+	}
+
+	/**
+	 * Writes the Average and Single files of an export to a new temporary folder.
+	 * @param size The amount of competitors.
+	 * @param seed The seed of the results.
+	 * @return The export.
+	 * @throws IOException
+	 */
+	static Fixture create(int size, long seed) throws IOException
+	{
+		Fixture fixture = new Fixture(Files.createTempDirectory("kinch-bench").toFile(), new ExportGenerator(size, RanksIndex.EVENT_COUNT, seed));
+		fixture.generator.writeRanks(fixture.average, fixture.single);
+		return fixture;
+	}
+
+	/**
+	 * Writes some of the competitors to a WCA ID file.
+	 * @param size The amount of competitors.
+	 * @return The file.
+	 * @throws IOException
+	 */
+	File writeRoster(int size) throws IOException
+	{
+		return generator.writeRoster(new File(dir, "roster-" + size + ".txt"), size);
+	}
+
+	/**
+	 * @param size The amount of competitors.
+	 * @return Some of the competitors, see {@link ExportGenerator#roster(int)}.
+	 */
+	String[] roster(int size)
+	{
+		return generator.roster(size);
+	}
+
+	/**
+	 * Zips the Average and Single files, like the downloaded export.
+	 * @return The .zip file.
+	 * @throws IOException
+	 */
+	File zip() throws IOException
+	{
+		File file = new File(dir, "WCA_export.tsv.zip");
+		byte[] buffer = new byte[1 << 16];
+		try(ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file)))
+		{
+			for(File entry : new File[] {average, single})
+			{
+				out.putNextEntry(new ZipEntry(entry.getName()));
+				try(InputStream in = new FileInputStream(entry))
+				{
+					int read;
+					while((read = in.read(buffer)) != -1)
+						out.write(buffer, 0, read);
+				}
+				out.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Deletes the export's folder.
+	 */
+	void delete()
+	{
+		delete(dir);
+	}
+
+	static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+				delete(child);
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,79 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kawa.util.CsvStreamWriter;
+import com.kawa.util.MultiSink;
+import com.kawa.util.RowSink;
+
+/**
+ * Measures writing a ranked list, the last stage of {@link Main}: sorting it by average KinchRank and streaming every row to a file, in each
+ * output format (see {@link MultiSink#open(File, int)}). This is what {@code Main.fillCSV} does for the output file.
+ * @author Kawa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBenchmark
+{
+	/**
+	 * The amount of competitors in the roster, all of them in the export.
+	 */
+	@Param({"10000", "250000"})
+	public int rosterSize;
+
+	/**
+	 * The extension of the output file, which decides its format.
+	 */
+	@Param({"csv", "jsonl", "kcol"})
+	public String format;
+
+	private Fixture fixture;
+	private Main main;
+	private File output;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		fixture = Fixture.create(rosterSize, 42);
+		String[] roster = fixture.roster(rosterSize);
+		main = new Main(roster, false);
+		main.calculate(Parser.loadIndex(fixture.average, fixture.single, roster));
+		output = new File(fixture.dir, "kinch." + format);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		fixture.delete();
+	}
+
+	@Benchmark
+	public File write() throws IOException
+	{
+		try(RowSink sink = MultiSink.open(output, CsvStreamWriter.DEFAULT_DECIMALS))
+		{
+			main.write(sink);
+		}
+		return output;
+	}
+}
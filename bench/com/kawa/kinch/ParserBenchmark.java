@@ -0,0 +1,95 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways of reading the WCA database files, against a {@link Fixture} export:<br><br>
+ *
+ * <code>parse</code> and <code>parseForWR</code> are the original lookups, which read a whole file through OpenCSV for one result.<br>
+ * <code>loadIndex</code> reads both files once through a {@link RanksScanner}, keeping the roster's results.<br>
+ * <code>readFromFile</code> reads the roster's WCA ID file.
+ * @author Kawa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark
+{
+	/**
+	 * The amount of competitors in the export.
+	 */
+	@Param({"10000", "100000"})
+	public int exportSize;
+
+	/**
+	 * The amount of competitors in the roster.
+	 */
+	@Param({"100", "5000"})
+	public int rosterSize;
+
+	private Fixture fixture;
+	private String[] roster;
+	private File rosterFile;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		fixture = Fixture.create(exportSize, 42);
+		roster = fixture.roster(rosterSize);
+		rosterFile = fixture.writeRoster(rosterSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		fixture.delete();
+	}
+
+	/**
+	 * One competitor's 3x3 average, a different competitor each time.
+	 */
+	@Benchmark
+	public int parse() throws IOException
+	{
+		next = (next + 1) % roster.length;
+		return Parser.parse(fixture.average, "333", roster[next]);
+	}
+
+	@Benchmark
+	public int parseForWR() throws IOException
+	{
+		return Parser.parseForWR(fixture.average, "333");
+	}
+
+	@Benchmark
+	public RanksIndex loadIndex() throws IOException
+	{
+		return Parser.loadIndex(fixture.average, fixture.single, roster);
+	}
+
+	@Benchmark
+	public String[] readFromFile() throws IOException
+	{
+		return Parser.readFromFile(rosterFile);
+	}
+}
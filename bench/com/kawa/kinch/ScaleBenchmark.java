@@ -0,0 +1,198 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import com.kawa.util.CsvStreamWriter;
+import com.kawa.util.MultiSink;
+import com.kawa.util.RowSink;
+import com.kawa.util.Util;
+
+/**
+ * Runs every stage of {@link Main} on made-up exports of several sizes (see {@link ExportGenerator}), with rosters of several sizes, to show
+ * how each stage scales. The stages are the same ones a run goes through once the database is downloaded:<br><br>
+ *
+ * <code>unzip</code>: extracting the Average and Single files from the .zip file<br>
+ * <code>parse</code>: reading the WCA ID file and indexing the roster's results<br>
+ * <code>score</code>: calculating the KinchRanks ({@link Main#calculate(RanksIndex)})<br>
+ * <code>write</code>: sorting and writing the .csv file ({@link Main#write(RowSink)})<br><br>
+ *
+ * Each stage is timed by wall clock, and its peak heap is the most the heap held while it ran, counted from the peaks of each of the heap's
+ * pools (so it can be a little more than the heap ever held at once). The heap is collected before each stage. Each roster is ranked a few
+ * times, and the fastest time and the largest peak of each stage are kept. The results are printed, and written to <code>scale.csv</code>
+ * in the work folder.<br><br>
+ *
+ * <code>java com.kawa.kinch.ScaleBenchmark [work folder] [competitors, comma-separated] [roster sizes, comma-separated]
+ * [threads (optional, default 1)] [runs (optional, default 3)] [events (optional, default 18)]</code><br><br>
+ *
+ * such as <code>bench-work 250000,2500000 1000,100000,2500000</code> for today's WCA size and ten times it. Give the JVM enough heap for the
+ * largest size with <code>-Xmx</code>.
+ * @author Kawa
+ */
+public class ScaleBenchmark
+{
+	private static final String[] STAGES = {"unzip", "parse", "score", "write"};
+
+	private final File dir;
+	private final int threads;
+	private final int runs;
+
+	private long[] nanos = new long[STAGES.length];
+	private long[] peak = new long[STAGES.length];
+	private long started;
+
+	public ScaleBenchmark(File dir, int threads, int runs)
+	{
+		this.dir = dir;
+		this.threads = threads;
+		this.runs = runs;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		File dir = new File(args[0]);
+		int[] sizes = parseList(args[1]);
+		int[] rosters = parseList(args[2]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		int runs = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+		int events = args.length > 5 ? Integer.parseInt(args[5]) : RanksIndex.EVENT_COUNT;
+
+		dir.mkdirs();
+		ScaleBenchmark benchmark = new ScaleBenchmark(dir, threads, runs);
+		try(CsvStreamWriter report = new CsvStreamWriter(new File(dir, "scale.csv"), 3))
+		{
+			report.writeRow("competitors", "roster", "rows", "stage", "millis", "peakHeapMB", "throughput", "unit");
+			System.out.println(String.format("%12s %10s %6s %10s %12s %16s", "competitors", "roster", "stage", "ms", "peak heap MB", "throughput"));
+			for(int size : sizes)
+			{
+				long start = System.nanoTime();
+				ExportGenerator generator = new ExportGenerator(size, events, 42);
+				File archive = new File(dir, "WCA_export-" + size + ".tsv.zip");
+				generator.writeArchive(archive);
+				System.out.println("> Generated " + size + " competitors (" + generator.getRows() + " rows, " + archive.length() / 1048576
+						+ " MB) in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+				for(int roster : rosters)
+				{
+					if(roster > size)
+						continue;
+					benchmark.run(generator, archive, roster);
+					benchmark.report(report, generator, roster);
+				}
+				archive.delete();
+			}
+		}
+	}
+
+	private static int[] parseList(String list)
+	{
+		String[] fields = list.split(",");
+		int[] values = new int[fields.length];
+		for(int i = 0; i < fields.length; i++)
+			values[i] = Integer.parseInt(fields[i].trim());
+		return values;
+	}
+
+	/**
+	 * Ranks a roster several times, keeping the fastest time and the largest peak of each stage.
+	 */
+	private void run(ExportGenerator generator, File archive, int rosterSize) throws IOException
+	{
+		File exports = new File(dir, "exports");
+		File rosterFile = generator.writeRoster(new File(dir, "roster.txt"), rosterSize);
+		File output = new File(dir, "kinch.csv");
+		Arrays.fill(nanos, Long.MAX_VALUE);
+		Arrays.fill(peak, 0);
+
+		for(int run = 0; run < runs; run++)
+		{
+			Fixture.delete(exports);
+			exports.mkdirs();
+			start();
+			Util.unzipFile(archive, exports, new Predicate<String>() {
+				@Override
+				public boolean test(String name)
+				{
+					return name.endsWith(Parser.ENTRY_AVERAGE) || name.endsWith(Parser.ENTRY_SINGLE);
+				}
+			}, threads);
+			stop(0);
+
+			start();
+			String[] wcaIds = Parser.readFromFile(rosterFile);
+			RanksIndex index = Parser.loadIndex(new File(exports, Parser.ENTRY_AVERAGE), new File(exports, Parser.ENTRY_SINGLE), wcaIds, threads);
+			stop(1);
+
+			// a quiet Main, which doesn't print every competitor it finds
+			Main main = new Main(wcaIds, true);
+
+			start();
+			main.calculate(index);
+			stop(2);
+
+			start();
+			try(RowSink sink = MultiSink.open(output, CsvStreamWriter.DEFAULT_DECIMALS))
+			{
+				main.write(sink);
+			}
+			stop(3);
+		}
+		Fixture.delete(exports);
+		rosterFile.delete();
+		output.delete();
+	}
+
+	private void start()
+	{
+		System.gc();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+		}
+		started = System.nanoTime();
+	}
+
+	private void stop(int stage)
+	{
+		nanos[stage] = Math.min(nanos[stage], System.nanoTime() - started);
+		long used = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP)
+				used += pool.getPeakUsage().getUsed();
+		}
+		peak[stage] = Math.max(peak[stage], used);
+	}
+
+	private void report(CsvStreamWriter report, ExportGenerator generator, int roster) throws IOException
+	{
+		// what each stage goes through: the uncompressed ranks rows, the roster, and the ranked rows
+		double[] amounts = {generator.getRows(), generator.getRows(), roster, roster};
+		String[] units = {"rows/s", "rows/s", "competitors/s", "rows/s"};
+		for(int stage = 0; stage < STAGES.length; stage++)
+		{
+			double millis = nanos[stage] / 1e6;
+			double throughput = amounts[stage] * 1e9 / Math.max(1, nanos[stage]);
+			double peakMb = peak[stage] / 1048576.0;
+			System.out.println(String.format("%12d %10d %6s %10.1f %12.1f %16s", generator.getPersons(), roster, STAGES[stage], millis, peakMb,
+					String.format("%.0f %s", throughput, units[stage])));
+
+			report.writeField(generator.getPersons());
+			report.writeField(roster);
+			report.writeField(generator.getRows());
+			report.writeField(STAGES[stage]);
+			report.writeField(millis);
+			report.writeField(peakMb);
+			report.writeField(throughput);
+			report.writeField(units[stage]);
+			report.endRow();
+		}
+		report.flush();
+	}
+}
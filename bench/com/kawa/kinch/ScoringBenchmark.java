@@ -0,0 +1,120 @@
+package com.kawa.kinch;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kawa.util.Util;
+
+/**
+ * Compares the ways of calculating every KinchRank and average KinchRank of a list:<br><br>
+ *
+ * <code>perCell</code> is the original way, one {@link Util#calculateKinch(int, int)} per result of a row-major array, and then
+ * {@link Util#calculateAverage(double[])} per row.<br>
+ * <code>twoPass</code> scores each column of a {@link ResultStore} and then averages the columns in another pass.<br>
+ * <code>fused</code> is {@link ResultStore#kinch(int[], boolean, int)}, which parses the MBLD results, scores and adds up the totals in
+ * one branch-free pass.
+ * @author Kawa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark
+{
+	/**
+	 * The amount of competitors, from a region up to everyone in the WCA database.
+	 */
+	@Param({"10000", "250000"})
+	public int size;
+
+	/**
+	 * Whether the store is kept off-heap.
+	 */
+	@Param({"false"})
+	public boolean direct;
+
+	private int[][] rows;
+	private double[][] rowScores;
+	private ResultStore store;
+	private int[] best;
+
+	/**
+	 * The MBLD result the MBLD column is calculated against, 40 points in 50 minutes.
+	 */
+	private static final int MBLD_RECORD = 590300000;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Random random = new Random(42);
+		rows = new int[size][RanksIndex.EVENT_COUNT];
+		rowScores = new double[size][RanksIndex.EVENT_COUNT];
+		store = ResultStore.allocate(size, direct);
+		best = new int[RanksIndex.EVENT_COUNT];
+		for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+			best[column] = 300 + random.nextInt(500);
+
+		for(int i = 0; i < size; i++)
+		{
+			for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+			{
+				// most competitors have only done a few events
+				int result = random.nextInt(100) < (column < 2 ? 80 : 25) ? 800 + random.nextInt(20000) : 0;
+				if(column == RanksIndex.EVENT_COUNT - 1 && result != 0)
+					result = (99 - 2 - random.nextInt(30)) * 10000000 + (600 + random.nextInt(3000)) * 100 + random.nextInt(3);
+				rows[i][column] = result;
+				store.setResult(column, i, result);
+			}
+		}
+	}
+
+	@Benchmark
+	public void perCell(Blackhole blackhole)
+	{
+		double mbldBest = Util.parseMBLD(MBLD_RECORD);
+		for(int i = 0; i < size; i++)
+		{
+			int[] row = rows[i];
+			double[] scores = rowScores[i];
+			for(int column = 0; column < RanksIndex.EVENT_COUNT - 1; column++)
+				scores[column] = Util.calculateKinch(row[column], best[column]);
+			scores[RanksIndex.EVENT_COUNT - 1] = Util.calculateKinch(mbldBest, Util.parseMBLD(row[RanksIndex.EVENT_COUNT - 1]));
+			blackhole.consume(Util.calculateAverage(scores));
+		}
+	}
+
+	@Benchmark
+	public ResultStore twoPass()
+	{
+		for(int column = 0; column < RanksIndex.EVENT_COUNT - 1; column++)
+			store.score(column, best[column]);
+		for(int i = 0; i < size; i++)
+			store.setScore(RanksIndex.EVENT_COUNT - 1, i, Util.parseMBLD(store.getResult(RanksIndex.EVENT_COUNT - 1, i)));
+		store.scale(RanksIndex.EVENT_COUNT - 1, Util.parseMBLD(MBLD_RECORD));
+		store.average();
+		return store;
+	}
+
+	@Benchmark
+	public ResultStore fused()
+	{
+		store.kinch(best, false, MBLD_RECORD);
+		return store;
+	}
+}
@@ -0,0 +1,90 @@
+package com.kawa.kinch;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kawa.util.Util;
+
+/**
+ * Measures the calculations in {@link Util} that are made for every result of a list: {@link Util#parseMBLD(int)},
+ * {@link Util#calculateKinch(int, int)} and {@link Util#calculateAverage(double[])}. Each benchmark runs over a whole list.
+ * @author Kawa
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark
+{
+	/**
+	 * The amount of competitors.
+	 */
+	@Param({"10000", "250000"})
+	public int size;
+
+	private int[] mbld;
+	private int[] results;
+	private double[][] scores;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Random random = new Random(42);
+		mbld = new int[size];
+		results = new int[size];
+		scores = new double[size][RanksIndex.EVENT_COUNT];
+		for(int i = 0; i < size; i++)
+		{
+			// a few are in the old MBLD format, 1SSAATTTTT
+			if(random.nextInt(50) == 0)
+				mbld[i] = 1000000000 + (99 - 5 - random.nextInt(20)) * 10000000 + (10 + random.nextInt(20)) * 100000 + random.nextInt(3600);
+			else if(random.nextInt(4) != 0)
+				mbld[i] = (99 - 1 - random.nextInt(40)) * 10000000 + (600 + random.nextInt(3000)) * 100 + random.nextInt(3);
+			results[i] = random.nextInt(4) == 0 ? 0 : 800 + random.nextInt(20000);
+			for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				scores[i][column] = random.nextInt(3) == 0 ? 0.0 : random.nextDouble() * 100.0;
+		}
+	}
+
+	@Benchmark
+	public double parseMBLD()
+	{
+		double sum = 0.0;
+		for(int result : mbld)
+			sum += Util.parseMBLD(result);
+		return sum;
+	}
+
+	@Benchmark
+	public double calculateKinch()
+	{
+		double sum = 0.0;
+		for(int result : results)
+			sum += Util.calculateKinch(result, 700);
+		return sum;
+	}
+
+	@Benchmark
+	public double calculateAverage()
+	{
+		double sum = 0.0;
+		for(double[] row : scores)
+			sum += Util.calculateAverage(row);
+		return sum;
+	}
+}
@@ -0,0 +1,45 @@
+package com.kawa.kinch;
+
+/**
+ * The results KinchRanks are calculated against when they aren't relative: the world record of each event column, which is the result
+ * ranked 1st in the world. The table is filled by {@link RanksIndex} in the same pass that reads everyone's results, so it costs no extra
+ * reading, and it belongs to one WCA database, so it can be reused for any list of WCA IDs.
+ * @author Kawa
+ */
+public class Baselines
+{
+	/**
+	 * The world record of each event column, or 0 if none was found.
+	 */
+	private final int[] records = new int[RanksIndex.EVENT_COUNT];
+
+	/**
+	 * @param column The event column.
+	 * @return The world record, or 0 if none was found.
+	 */
+	public int getRecord(int column)
+	{
+		return records[column];
+	}
+
+	/**
+	 * Records a result that is ranked 1st in the world. When there is a tie, the results are the same anyway.
+	 * @param column The event column.
+	 * @param best The result.
+	 */
+	void record(int column, int best)
+	{
+		if(best > 0 && (records[column] == 0 || best < records[column]))
+			records[column] = best;
+	}
+
+	/**
+	 * Adds the world records found in another part of the same database.
+	 * @param other The other table.
+	 */
+	void merge(Baselines other)
+	{
+		for(int column = 0; column < records.length; column++)
+			record(column, other.records[column]);
+	}
+}
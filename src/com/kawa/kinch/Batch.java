@@ -0,0 +1,342 @@
+package com.kawa.kinch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.kawa.util.ConsoleProgress;
+import com.kawa.util.CsvStreamWriter;
+import com.kawa.util.Metrics;
+import com.kawa.util.ProgressListener;
+import com.kawa.util.Util;
+
+/**
+ * Calculates the KinchRanks of several lists of WCA IDs from a single download and index of the WCA database. Each list gets its own
+ * {@link Main}, which runs every stage after indexing (see {@link Main#rank(RanksIndex)}) on the shared index, so a list's relative results
+ * are still only found from the competitors in that list. The lists are ranked at the same time.<br><br>
+ *
+ * The lists are given in a manifest, a plaintext file with one list per line:<br><br>
+ *
+ * <code>WCA ID file path &nbsp; output .csv file path &nbsp; [relativeOrWR (true or false)]</code><br><br>
+ *
+ * separated by tabs. A list without its own relativeOrWR uses the one the batch was created with. The output can be several files
+ * separated by commas, each in the format its extension asks for (see {@link Main#addOutput(File)}). Empty lines and lines starting with
+ * <code>#</code> are skipped, and relative paths are relative to the manifest.
+ * @author Kawa
+ */
+public class Batch implements Runnable
+{
+	/**
+	 * This is the manifest {@link File}.
+	 */
+	private File manifest;
+
+	/**
+	 * This flags whether to use the best results found from the imported data, or from the current WRs, for lists that don't say.
+	 */
+	private boolean relative;
+
+	/**
+	 * This flags whether or not to delete the previously downloaded database files.
+	 */
+	private boolean clean;
+
+	/**
+	 * This is the amount of threads used to read the WCA database files, and to rank the lists.
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * This flags whether to keep the {@link ResultStore} columns off-heap.
+	 */
+	private boolean offHeap;
+
+	/**
+	 * This flags whether to read the WCA database straight out of the downloaded .zip file instead of extracting it first.
+	 */
+	private boolean fromArchive;
+
+	/**
+	 * This flags whether to load the WCA database from a {@link Snapshot} when one exists for it, and to make one when it doesn't.
+	 */
+	private boolean snapshot = true;
+
+	/**
+	 * This flags whether to only calculate the competitors whose results have changed since the last ranking of each list.
+	 */
+	private boolean incremental;
+
+	/**
+	 * This is the amount of decimals the KinchRanks are written with.
+	 */
+	private int decimals = CsvStreamWriter.DEFAULT_DECIMALS;
+
+	/**
+	 * This is what stopped the last {@link #run()}, or {@code null} if every list was ranked.
+	 */
+	private Exception failure;
+
+	/**
+	 * @param manifest The manifest {@link File}.
+	 * @param relative Flags whether to use the best results found from the imported data, or from the current WRs, for lists that don't say.
+	 * @param clean Flags whether or not to delete the previously downloaded database files.
+	 */
+	public Batch(File manifest, boolean relative, boolean clean)
+	{
+		this.manifest = manifest;
+		this.relative = relative;
+		this.clean = clean;
+	}
+
+	/**
+	 * Reads the manifest.
+	 * @return A {@link Main} for each list in the manifest.
+	 * @throws IOException
+	 */
+	public List<Main> readManifest() throws IOException
+	{
+		List<Main> mains = new ArrayList<Main>();
+		File dir = manifest.getAbsoluteFile().getParentFile();
+		try(BufferedReader reader = new BufferedReader(new FileReader(manifest)))
+		{
+			String line;
+			int number = 0;
+			while((line = reader.readLine()) != null)
+			{
+				number++;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				String[] fields = line.split("\t");
+				if(fields.length < 2)
+					throw new IOException("Line " + number + " of " + manifest + " needs a WCA ID file and an output file, separated by a tab");
+
+				boolean listRelative = fields.length > 2 ? Boolean.parseBoolean(fields[2].trim()) : relative;
+				String[] outputs = fields[1].split(",");
+				Main main = new Main(resolve(dir, fields[0].trim()).getPath(), listRelative, false, resolve(dir, outputs[0].trim()));
+				// the lists are ranked at the same time, so their progress would only be jumbled together
+				main.setProgressListener(ProgressListener.NONE);
+				for(int i = 1; i < outputs.length; i++)
+					main.addOutput(resolve(dir, outputs[i].trim()));
+				main.setOffHeap(offHeap);
+				main.setParallelism(parallelism);
+				main.setFromArchive(fromArchive);
+				main.setSnapshot(snapshot);
+				main.setIncremental(incremental);
+				main.setDecimals(decimals);
+				mains.add(main);
+			}
+		}
+		return mains;
+	}
+
+	private static File resolve(File dir, String path)
+	{
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(dir, path);
+	}
+
+	private void start() throws Exception
+	{
+		Metrics metrics = Metrics.get();
+		metrics.reset();
+		boolean completed = false;
+		try
+		{
+			rankAll(metrics);
+			completed = true;
+		}
+		finally
+		{
+			Main.writeReport(manifest, completed);
+		}
+		System.out.println("> Done!");
+	}
+
+	@SuppressWarnings("try")
+	private void rankAll(Metrics metrics) throws Exception
+	{
+		List<Main> mains = readManifest();
+		System.out.println("> Cleaning");
+		try(Metrics.Stage stage = metrics.start("clean"))
+		{
+			Util.clean(false, true);
+		}
+		System.out.println("> Downloading database");
+		try(Metrics.Stage stage = metrics.start("download"))
+		{
+			Retriever.retrieveDatabase(new ConsoleProgress(), !fromArchive);
+		}
+
+		String[] wcaIds = null;
+		if(!snapshot)
+		{
+			// without a snapshot to make, only the competitors of every list need to be kept
+			Set<String> union = new LinkedHashSet<String>();
+			for(Main main : mains)
+			{
+				try
+				{
+					for(String id : main.readWcaIds())
+						union.add(id);
+				}
+				catch(IOException e)
+				{
+					// reported when the list is ranked
+				}
+			}
+			wcaIds = union.toArray(new String[union.size()]);
+		}
+		System.out.println("> Indexing the database");
+		RanksIndex index;
+		try(Metrics.Stage stage = metrics.start("index"))
+		{
+			index = Parser.loadDatabase(wcaIds, parallelism, fromArchive, snapshot);
+		}
+
+		System.out.println("> Ranking " + mains.size() + " lists");
+		int failed = rank(mains, index);
+
+		if(clean)
+		{
+			System.out.println("> Cleaning up");
+			Util.clean(false);
+		}
+		// the other lists are written by now, but the batch as a whole didn't complete
+		if(failed > 0)
+			throw new IOException(failed + " of " + mains.size() + " lists couldn't be ranked");
+	}
+
+	/**
+	 * Ranks several lists at the same time from one index. A list that fails is reported, and doesn't stop the others.
+	 * @param mains The lists, see {@link #readManifest()}.
+	 * @param index The index of the WCA database.
+	 * @return The amount of lists that failed.
+	 */
+	public int rank(List<Main> mains, final RanksIndex index)
+	{
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final Main main : mains)
+		{
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException
+				{
+					main.rank(index);
+					return null;
+				}
+			});
+		}
+
+		int failed = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, mains.size())));
+		try
+		{
+			List<Future<Void>> futures = executor.invokeAll(tasks);
+			for(int i = 0; i < futures.size(); i++)
+			{
+				try
+				{
+					futures.get(i).get();
+				}
+				catch(ExecutionException e)
+				{
+					failed++;
+					System.out.println(">> Couldn't rank " + mains.get(i).getOutputFile() + ": " + e.getCause());
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		return failed;
+	}
+
+	/**
+	 * Sets the amount of threads used to read the WCA database files, and to rank the lists at the same time.
+	 * @param parallelism The amount of threads.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param offHeap Flags whether to keep each list's {@link ResultStore} columns off-heap.
+	 */
+	public void setOffHeap(boolean offHeap)
+	{
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * @param fromArchive Flags whether to read the WCA database straight out of the downloaded .zip file, see {@link Main#setFromArchive(boolean)}.
+	 */
+	public void setFromArchive(boolean fromArchive)
+	{
+		this.fromArchive = fromArchive;
+	}
+
+	/**
+	 * @param snapshot Flags whether to use snapshots, see {@link Main#setSnapshot(boolean)}.
+	 */
+	public void setSnapshot(boolean snapshot)
+	{
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * @param incremental Flags whether to start each list from its last ranking, see {@link Main#setIncremental(boolean)}.
+	 */
+	public void setIncremental(boolean incremental)
+	{
+		this.incremental = incremental;
+	}
+
+	/**
+	 * @param decimals The amount of decimals each list's KinchRanks are written with, see {@link Main#setDecimals(int)}.
+	 */
+	public void setDecimals(int decimals)
+	{
+		this.decimals = decimals;
+	}
+
+	/**
+	 * @return What stopped the last {@link #run()}, such as a list that couldn't be ranked, or {@code null} if every list was ranked.
+	 */
+	public Exception getFailure()
+	{
+		return failure;
+	}
+
+	@Override
+	public void run()
+	{
+		failure = null;
+		try
+		{
+			start();
+		}
+		catch(Exception e)
+		{
+			failure = e;
+			System.out.println("> Batch failed: " + e);
+		}
+	}
+}
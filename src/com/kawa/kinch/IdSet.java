@@ -0,0 +1,166 @@
+package com.kawa.kinch;
+
+import java.util.Arrays;
+
+/**
+ * A compact set of packed WCA IDs (see {@link WcaId}), which gives each ID an ordinal in the order it was added. {@link RanksScanner} uses
+ * one to skip the lines of competitors that aren't being looked for before any of the line is parsed, and {@link RanksIndex} uses one to
+ * find each competitor's results. It is an open-addressing hash table of {@code long}s that is kept at most half full, so a lookup is
+ * usually a single read, and that doubles in size as IDs are added.
+ * @author Kawa
+ */
+public class IdSet
+{
+	/**
+	 * Marks an empty slot in the hash table.
+	 */
+	private static final long EMPTY = -1;
+
+	/**
+	 * The hash table of packed WCA IDs.
+	 */
+	private long[] keys;
+
+	/**
+	 * The ordinal of the WCA ID in the same slot of {@code keys}.
+	 */
+	private int[] slots;
+
+	/**
+	 * The packed WCA ID of each ordinal.
+	 */
+	private long[] ids;
+
+	private int size;
+
+	/**
+	 * @param capacity The amount of IDs to make room for.
+	 */
+	public IdSet(int capacity)
+	{
+		int tableSize = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) * 2;
+		keys = new long[tableSize];
+		Arrays.fill(keys, EMPTY);
+		slots = new int[tableSize];
+		ids = new long[Math.max(16, capacity)];
+	}
+
+	/**
+	 * Creates a set from a list of WCA IDs, such as the one read by {@link Parser#readFromFile(java.io.File)}. IDs that aren't valid are
+	 * left out.
+	 * @param wcaIds The WCA IDs.
+	 * @return The set.
+	 */
+	public static IdSet of(String[] wcaIds)
+	{
+		IdSet set = new IdSet(wcaIds.length);
+		for(String id : wcaIds)
+		{
+			long packed = WcaId.pack(id);
+			if(packed != WcaId.INVALID)
+				set.add(packed);
+		}
+		return set;
+	}
+
+	/**
+	 * Adds an ID, unless it's already in the set.
+	 * @param personId The packed WCA ID.
+	 * @return The ordinal of the ID.
+	 */
+	public int add(long personId)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(personId) & mask;
+		while(keys[slot] != EMPTY)
+		{
+			if(keys[slot] == personId)
+				return slots[slot];
+			slot = (slot + 1) & mask;
+		}
+
+		if(size == ids.length)
+			ids = Arrays.copyOf(ids, size * 2);
+
+		int ordinal = size++;
+		ids[ordinal] = personId;
+		keys[slot] = personId;
+		slots[slot] = ordinal;
+
+		if(size * 2 > keys.length)
+			rehash();
+		return ordinal;
+	}
+
+	/**
+	 * @param personId The packed WCA ID.
+	 * @return The ordinal of the ID, or -1 if it isn't in the set.
+	 */
+	public int ordinal(long personId)
+	{
+		if(personId == WcaId.INVALID)
+			return -1;
+
+		int mask = keys.length - 1;
+		for(int slot = hash(personId) & mask; ; slot = (slot + 1) & mask)
+		{
+			long key = keys[slot];
+			if(key == personId)
+				return slots[slot];
+			if(key == EMPTY)
+				return -1;
+		}
+	}
+
+	/**
+	 * @param personId The packed WCA ID.
+	 * @return Whether the ID is in the set.
+	 */
+	public boolean contains(long personId)
+	{
+		return ordinal(personId) >= 0;
+	}
+
+	/**
+	 * @param ordinal The ordinal of an ID.
+	 * @return The packed WCA ID.
+	 */
+	public long get(int ordinal)
+	{
+		return ids[ordinal];
+	}
+
+	/**
+	 * @return The amount of IDs in the set.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Doubles the size of the hash table.
+	 */
+	private void rehash()
+	{
+		keys = new long[keys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		slots = new int[keys.length];
+
+		int mask = keys.length - 1;
+		for(int ordinal = 0; ordinal < size; ordinal++)
+		{
+			int slot = hash(ids[ordinal]) & mask;
+			while(keys[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			keys[slot] = ids[ordinal];
+			slots[slot] = ordinal;
+		}
+	}
+
+	private static int hash(long personId)
+	{
+		long h = personId * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -1,18 +1,25 @@
 package com.kawa.kinch;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.List;
 
 import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
 
 import com.kawa.util.ConsoleOutputStream;
+import com.kawa.util.ConsoleProgress;
+import com.kawa.util.CsvStreamWriter;
+import com.kawa.util.Metrics;
+import com.kawa.util.MultiSink;
+import com.kawa.util.Progress;
+import com.kawa.util.ProgressBarListener;
+import com.kawa.util.ProgressListener;
+import com.kawa.util.RowSink;
 import com.kawa.util.Util;
-import com.opencsv.CSVWriter;
 
 /**
  * <b>This class is the backbone of the program. This opens a {@link Thread} to calculate the KinchRanks from a list of WCA IDs. The process is as follows:</b><br>
@@ -56,14 +63,40 @@ public class Main implements Runnable
 	public static final String[] EVENTS_BESTOF = {"333bf", "444bf", "555bf", "333mbf"};
 	
 	/**
-	 * This is a 2D {@code int} array that holds the raw WCA data.
+	 * This is the header of the output, the competitor's WCA ID and average KinchRank followed by each event's KinchRank.
 	 */
-	private int[][] kinchRaw;
+	public static final String[] HEADER = {"Person", "KinchRank", "222", "333", "444", "555", "666", "777", "333oh", "333ft", "333fm", "minx", "pyram", "sq1", "clock", "skewb", "333bf", "444bf", "555bf", "333mbf"};
 	
 	/**
-	 * This is a 2D {@code double} array that holds the processed KinchRanks data.
+	 * This holds the raw WCA data, the processed KinchRanks data and the average KinchRanks, one column per event.
 	 */
-	private double[][] kinchDone;
+	private ResultStore results;
+	
+	/**
+	 * This flags whether to keep the {@link ResultStore} columns off-heap.
+	 */
+	private boolean offHeap;
+	
+	/**
+	 * This is the amount of threads used to read the WCA database files.
+	 */
+	private int parallelism = 1;
+	
+	/**
+	 * This flags whether to read the WCA database straight out of the downloaded .zip file instead of extracting it first.
+	 */
+	private boolean fromArchive;
+	
+	/**
+	 * This flags whether to index the WCA database while it is being downloaded, see {@link Pipeline}.
+	 */
+	private boolean pipelined;
+	
+	/**
+	 * This flags whether to load the WCA database from a {@link Snapshot} when one exists for it. A list is ranked without making one, see
+	 * {@link #setSnapshot(boolean)}.
+	 */
+	private boolean snapshot = true;
 	
 	/**
 	 * This is an {@code int} array that holds the results the KinchRanks are calculated against.
@@ -71,20 +104,19 @@ public class Main implements Runnable
 	private int[] fastestIndex;
 	
 	/**
-	 * MBLD is calculated in a different manner than other events. Each imported result is an {@code int} in the form of <code>0DDTTTTTMM</code>, and is decoded like this:<br><br>
-	 * 
-	 * difference = 99 - DD<br>
-	 * timeInSeconds = TTTTT (99999 means unknown)<br>
-	 * missed = MM<br><br>
-	 * 
-	 * The result for MBLD is calculated separately and stored in this {@code double} for each competitor.
+	 * This is the MBLD points the MBLD KinchRanks are calculated against.
 	 */
-	private double[] mbld;
+	private double mbldBest;
 	
 	/**
-	 * This is a {@code double} array that contains the average KinchRank from each event.
+	 * This flags whether to only calculate the competitors whose results have changed since the last ranking of the same list.
 	 */
-	private double[] finalKinch;
+	private boolean incremental;
+	
+	/**
+	 * These are the WRs of the WCA database, found while it was being indexed.
+	 */
+	private Baselines baselines;
 	
 	/**
 	 * This is the list of WCA IDs from a user-designated {@link File}.
@@ -97,9 +129,9 @@ public class Main implements Runnable
 	private File wcaIdFile;
 	
 	/**
-	 * This allows for the code to write to the GUI's {@link JProgressBar}.
+	 * This receives the progress of the download and of finding each competitor's results, such as the GUI's {@link JProgressBar}.
 	 */
-	private JProgressBar bar;
+	private ProgressListener progress;
 	
 	/**
 	 * This flags whether or not to delete the previously downloaded database files. 
@@ -115,6 +147,31 @@ public class Main implements Runnable
 	 * This is the output CSV {@link File}.
 	 */
 	private File outputFile;
+	
+	/**
+	 * This flags whether to print a line for every competitor whose results are found.
+	 */
+	private boolean verbose = true;
+
+	/**
+	 * This is the amount of decimals the KinchRanks are written to the CSV file with.
+	 */
+	private int decimals = CsvStreamWriter.DEFAULT_DECIMALS;
+
+	/**
+	 * These are the files the KinchRanks are written to as well as the output file.
+	 */
+	private List<File> extraOutputs = new ArrayList<File>();
+
+	/**
+	 * This is the stream the GUI's console is printed to, shared by every run.
+	 */
+	private static ConsoleOutputStream console;
+
+	/**
+	 * This is what stopped the last {@link #run()}, or {@code null} if it finished.
+	 */
+	private Exception failure;
 
 	/**
 	 * @param file The WCA ID {@link File}
@@ -127,11 +184,18 @@ public class Main implements Runnable
 	public Main(String file, JTextArea area, JProgressBar bar, boolean relative, boolean clean, File outputFile)
 	{
 		this.wcaIdFile = new File(file);
-		this.bar = bar;
+		this.progress = new ProgressBarListener(bar);
 		this.relative = relative;
 		this.clean = clean;
 		this.outputFile = outputFile;
-		PrintStream ps = new PrintStream(new ConsoleOutputStream(area));
+		// every run from the GUI makes a new Main, but the console keeps the same stream, since each stream has a timer on the event thread
+		if(console == null || console.getTextArea() != area)
+		{
+			if(console != null)
+				console.close();
+			console = new ConsoleOutputStream(area);
+		}
+		PrintStream ps = new PrintStream(console);
 		System.setOut(ps);
 		System.setErr(ps);
 	}
@@ -147,212 +211,570 @@ public class Main implements Runnable
 	{
 		this.wcaIdFile = new File(file);
 		this.relative = relative;
-		this.bar = new JProgressBar();
+		this.progress = new ConsoleProgress();
 		this.clean = clean;
 		this.outputFile = outputFile;
 	}
 	
+	/**
+	 * This constructor is only used to rank a list of WCA IDs that is already in memory, such as by {@link Server}. Nothing is written to a
+	 * file, so the KinchRanks are read back with {@link #getResults()} after {@link #calculate(RanksIndex)}.
+	 * @param wcaIds The WCA IDs.
+	 * @param relative Flags whether to use the best results found from the imported data, or from the current WRs. 
+	 */
+	public Main(String[] wcaIds, boolean relative)
+	{
+		this.wcaIds = wcaIds;
+		this.relative = relative;
+		this.progress = ProgressListener.NONE;
+		this.verbose = false;
+	}
+	
 	public static void main(String[] args) {
-		new Main(args[0], Boolean.parseBoolean(args[1]), Boolean.parseBoolean(args[2]), new File(args[3]));
+		boolean incremental = false;
+		boolean pipelined = false;
+		boolean fromArchive = false;
+		boolean snapshot = true;
+		int decimals = CsvStreamWriter.DEFAULT_DECIMALS;
+		List<File> outputs = new ArrayList<File>();
+		while(args[0].equals("--incremental") || args[0].equals("--pipelined") || args[0].equals("--from-archive") || args[0].equals("--no-snapshot")
+				|| args[0].equals("--decimals") || args[0].equals("--output"))
+		{
+			if(args[0].equals("--incremental") || args[0].equals("--pipelined") || args[0].equals("--from-archive") || args[0].equals("--no-snapshot"))
+			{
+				if(args[0].equals("--incremental"))
+					incremental = true;
+				else if(args[0].equals("--pipelined"))
+					pipelined = true;
+				else if(args[0].equals("--from-archive"))
+					fromArchive = true;
+				else
+					snapshot = false;
+				args = Arrays.copyOfRange(args, 1, args.length);
+			}
+			else
+			{
+				if(args[0].equals("--decimals"))
+					decimals = Integer.parseInt(args[1]);
+				else
+					outputs.add(new File(args[1]));
+				args = Arrays.copyOfRange(args, 2, args.length);
+			}
+		}
+		
+		if(args[0].equals("--server"))
+		{
+			Server server = new Server(Integer.parseInt(args[1]));
+			server.setFromArchive(fromArchive);
+			server.setSnapshot(snapshot);
+			if(args.length > 2)
+			{
+				server.setParallelism(Integer.parseInt(args[2]));
+				Retriever.setSegments(Integer.parseInt(args[2]));
+			}
+			if(args.length > 3)
+				server.setRefreshMinutes(Long.parseLong(args[3]));
+			try
+			{
+				server.start();
+			}
+			catch(IOException e)
+			{
+				System.out.println("> Couldn't start the server: " + e);
+				server.stop();
+			}
+			return;
+		}
+		
+		if(args[0].equals("--world"))
+		{
+			World world = new World(new File(args[1]), Boolean.parseBoolean(args[2]));
+			world.setFromArchive(fromArchive);
+			world.setSnapshot(snapshot);
+			world.setDecimals(decimals);
+			for(File output : outputs)
+				world.addOutput(output);
+			if(args.length > 3)
+			{
+				world.setParallelism(Integer.parseInt(args[3]));
+				Retriever.setSegments(Integer.parseInt(args[3]));
+			}
+			world.run();
+			if(world.getFailure() != null)
+				System.exit(1);
+			return;
+		}
+		
+		if(args[0].equals("--batch"))
+		{
+			Batch batch = new Batch(new File(args[1]), Boolean.parseBoolean(args[2]), Boolean.parseBoolean(args[3]));
+			batch.setIncremental(incremental);
+			batch.setFromArchive(fromArchive);
+			batch.setSnapshot(snapshot);
+			batch.setDecimals(decimals);
+			if(args.length > 4)
+			{
+				batch.setParallelism(Integer.parseInt(args[4]));
+				Retriever.setSegments(Integer.parseInt(args[4]));
+			}
+			batch.run();
+			if(batch.getFailure() != null)
+				System.exit(1);
+			return;
+		}
+		
+		Main main = new Main(args[0], Boolean.parseBoolean(args[1]), Boolean.parseBoolean(args[2]), new File(args[3]));
+		main.setIncremental(incremental);
+		main.setPipelined(pipelined);
+		main.setFromArchive(fromArchive);
+		main.setSnapshot(snapshot);
+		main.setDecimals(decimals);
+		for(File output : outputs)
+			main.addOutput(output);
+		if(args.length > 4)
+		{
+			main.setParallelism(Integer.parseInt(args[4]));
+			Retriever.setSegments(Integer.parseInt(args[4]));
+		}
+		main.run();
+		if(main.failure != null)
+			System.exit(1);
 	}
 
+	@SuppressWarnings("try")
 	private void start() throws Exception
 	{	
-		System.out.println("> Cleaning");
-		Util.clean(true);
-		System.out.println("> Downloading database");
-		Retriever.retrieveDatabase(bar);
-		System.out.println("> Reading from designated file");
-		wcaIds = Parser.readFromFile(wcaIdFile);
-		kinchRaw = new int[wcaIds.length][18];
-		kinchDone = new double[wcaIds.length][18];
-		fastestIndex = new int[18];
-		mbld = new double[wcaIds.length];
-		finalKinch = new double[wcaIds.length];	
-		bar.setValue(0);
-		bar.setString(null);
-		System.out.println("> Finding data");
-		fillRawData();	
-		System.out.println("> Calculating best result index");
-		calculateBest(relative);
-		fillKinch();
-		System.out.println("> Finding and calculating MBLD results");
-		fillKinchWithMBLD(relative);	
-		System.out.println("> Calculating the average KinchRanks");
-		calculateAverageKinchRank();
-		System.out.println("> Writing to file");
-		fillCSV(outputFile);
+		Metrics metrics = Metrics.get();
+		metrics.reset();
+		boolean completed = false;
+		try
+		{
+			System.out.println("> Cleaning");
+			try(Metrics.Stage stage = metrics.start("clean"))
+			{
+				Util.clean(false, true);
+			}
+			if(!pipelined)
+			{
+				System.out.println("> Downloading database");
+				try(Metrics.Stage stage = metrics.start("download"))
+				{
+					Retriever.retrieveDatabase(progress, !fromArchive);
+				}
+			}
+			System.out.println("> Reading from designated file");
+			try(Metrics.Stage stage = metrics.start("read roster"))
+			{
+				wcaIds = Parser.readFromFile(wcaIdFile);
+			}
+			RanksIndex index;
+			if(pipelined)
+			{
+				System.out.println("> Downloading database and finding data");
+				try(Metrics.Stage stage = metrics.start("download and index"))
+				{
+					index = Pipeline.loadDatabase(progress, wcaIds, parallelism, snapshot);
+				}
+			}
+			else
+			{
+				System.out.println("> Finding data");
+				try(Metrics.Stage stage = metrics.start("index"))
+				{
+					index = Parser.loadDatabase(wcaIds, parallelism, fromArchive, snapshot);
+				}
+			}
+			rank(index);
 
-		if(clean){ 
-			System.out.println("> Cleaning up");
-			Util.clean(false);
+			if(clean){ 
+				System.out.println("> Cleaning up");
+				Util.clean(false);
+			}
+			completed = true;
+		}
+		finally
+		{
+			writeReport(outputFile, completed);
 		}
 		
 		System.out.println("> Done!");
 	}
+
+	/**
+	 * Writes the run report of {@link Metrics} next to an output file, as <code>[output file].report.json</code> (see
+	 * {@link Metrics#writeReport(File, boolean)}). A report that can't be written is only printed, since the run itself is done.
+	 * @param output The output file.
+	 * @param completed Flags whether the run finished, or stopped because of an error.
+	 */
+	static void writeReport(File output, boolean completed)
+	{
+		File file = new File(output.getPath() + ".report.json");
+		try
+		{
+			Metrics.get().writeReport(file, completed);
+			System.out.println(">> Run report written to " + file);
+		}
+		catch(IOException e)
+		{
+			System.out.println(">> Couldn't write the run report: " + e);
+		}
+	}
+	
+	/**
+	 * This method runs every stage that comes after the WCA database has been indexed: it finds each competitor's results, calculates their
+	 * KinchRanks and writes them to the output file. The index is only read, so one index can be shared by several {@code Main}s running
+	 * at the same time (see {@link Batch}).
+	 * @param index The index of the WCA database.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public void rank(RanksIndex index) throws IOException
+	{
+		try(Metrics.Stage stage = Metrics.get().start("score"))
+		{
+			calculate(index);
+		}
+		System.out.println("> Writing to file");
+		try(Metrics.Stage stage = Metrics.get().start("write"))
+		{
+			fillCSV(outputFile);
+			if(incremental)
+				RankState.write(RankState.getFile(outputFile), wcaIds, relative, fastestIndex, mbldBest, results);
+		}
+	}
 	
 	/**
-	 * This method fills the {@code kinchRaw} array with the data found from the WCA database file. 
+	 * This method runs every stage from finding each competitor's results up to calculating their average KinchRanks, which are then
+	 * held in {@link #getResults()}. The index is only read, so one index can be shared by several {@code Main}s running at the same time.
+	 * @param index The index of the WCA database.
+	 * @throws IOException
+	 */
+	public void calculate(RanksIndex index) throws IOException
+	{
+		readWcaIds();
+		results = ResultStore.allocate(wcaIds.length, offHeap);
+		fastestIndex = new int[18];
+		fillRawData(index);
+		log("> Calculating best result index");
+		calculateBest(relative);
+		if(incremental)
+		{
+			log("> Updating the KinchRanks from the last ranking");
+			updateKinch(RankState.read(RankState.getFile(outputFile)));
+		}
+		else
+		{
+			log("> Calculating the KinchRanks");
+			mbldBest = results.kinch(fastestIndex, relative, baselines.getRecord(17));
+		}
+	}
+	
+	/**
+	 * This method fills the {@code results} columns with the data found from the WCA database file. The database is indexed once up front,
+	 * so each competitor is then a lookup rather than a search through the whole file.
 	 * @throws IOException
 	 */
 	public void fillRawData() throws IOException
 	{
+		fillRawData(Parser.loadDatabase(wcaIds, parallelism, fromArchive, snapshot));
+	}
+	
+	/**
+	 * This method fills the {@code results} columns with the data found in an index of the WCA database.
+	 * @param index The index.
+	 */
+	public void fillRawData(RanksIndex index)
+	{
+		baselines = index.getBaselines();
+		
+		int[] row = new int[RanksIndex.EVENT_COUNT];
 		int count = 0;
+		Progress found = new Progress(progress, "Finding results", wcaIds.length, false);
 		for(int i = 0; i < wcaIds.length; i++)
 		{
-			for(int j = 0; j < EVENTS_AVERAGE.length; j++)
-			{
-				kinchRaw[i][j] = Parser.parse(Parser.DB_AVERAGE, EVENTS_AVERAGE[j], wcaIds[i]);
-			}
-
-			for(int j = 0; j < EVENTS_BESTOF.length; j++)
-			{
-				kinchRaw[i][j + EVENTS_AVERAGE.length] = Parser.parse(Parser.DB_SINGLE, EVENTS_BESTOF[j], wcaIds[i]);
-			}
+			index.fill(wcaIds[i], row);
+			for(int j = 0; j < row.length; j++)
+				results.setResult(j, i, row[j]);
 			count++;
-			bar.setValue((int) Math.round((((double)count / (double)Parser.num) * 100.0)));
-			System.out.println(">> Found results for ID " + wcaIds[i] + ", " + count + " / " + Parser.num + " found, " + Math.round((((double)count / (double)Parser.num) * 100.0)) + "% done");
+			found.set(count);
+			// checked here rather than only in log, so a quiet Main doesn't build a line for every competitor
+			if(verbose)
+				log(">> Found results for ID " + wcaIds[i] + ", " + count + " / " + wcaIds.length + " found, " + Math.round((((double)count / (double)wcaIds.length) * 100.0)) + "% done");
 		}
+		found.finish();
 	}
 	
 	/**
-	 * This method calculates the best results from either the {@code kinchRaw} array itself, for from the WRs in the WCA database.
+	 * This method calculates the best results from either the {@code results} columns themselves, or from the WRs in the WCA database,
+	 * which were already found by {@link #fillRawData()}.
 	 * @param relative Flags whether to use the best results found from the imported data, or from the current WRs. 
 	 */
 	public void calculateBest(boolean relative)
 	{
 		if(relative)
 		{
-			int[][] kinchTransposed = Util.trasposeArray(kinchRaw);
-
 			for(int i = 0; i < 17; i++)
 			{
-				fastestIndex[i] = Util.findLowest(kinchTransposed[i]);
+				fastestIndex[i] = results.findLowest(i);
 			}
 		}
 		else
 		{
-			try
-			{
-				for(int i = 0; i < EVENTS_AVERAGE.length; i++)
-				{
-					fastestIndex[i] = Parser.parseForWR(Parser.DB_AVERAGE, EVENTS_AVERAGE[i]);
-				}
-
-				for(int i = 0; i < EVENTS_BESTOF.length; i++)
-				{
-					fastestIndex[i + EVENTS_AVERAGE.length] = Parser.parseForWR(Parser.DB_SINGLE, EVENTS_BESTOF[i]);
-				}
-			}
-			catch(IOException e)
+			for(int i = 0; i < 17; i++)
 			{
-				e.printStackTrace();
+				fastestIndex[i] = baselines.getRecord(i);
 			}
 		}
 	}
 	
 	/**
-	 * This method fills the {@code kinchDone} array with all the calculated KinchRanks except for MBLD.
+	 * This method parses the MBLD results in the {@code results} columns into points, puts them into the MBLD score column, and finds the points
+	 * the MBLD KinchRanks are calculated against.<br><br>
+	 * 
+	 * MBLD is calculated in a different manner than other events. Each imported result is an {@code int} in either the current form of
+	 * <code>0DDTTTTTMM</code> or the form of <code>1SSAATTTTT</code> used before 2009, and is turned into points by
+	 * {@link Util#parseMBLD(int)}, which describes both.
+	 * @param relative Flags whether to use the best result found from the imported data, or from the current WR. 
 	 */
-	public void fillKinch()
+	private void fillMBLDPoints(boolean relative)
 	{
 		for(int i = 0; i < wcaIds.length; i++)
 		{
-			for(int j = 0; j < 17; j++)
-			{
-				kinchDone[i][j] = Util.calculateKinch(kinchRaw[i][j], fastestIndex[j]);
-			}
+			results.setScore(17, i, Util.parseMBLD(results.getResult(17, i)));
 		}
-	}
 
+		if(relative)
+			mbldBest = results.findBest(17);
+		else
+			mbldBest = Util.parseMBLD(baselines.getRecord(17));
+	}
+	
 	/**
-	 * This method parses the MBLD results in the {@code kinchRaw} array and puts them into the {@code mbld} array. It
-	 * then calculates the KinchRanks based on either the fastest result found or the current WR.
-	 * @param relative Flags whether to use the best result found from the imported data, or from the current WR. 
-	 * @throws IOException 
+	 * This method fills the {@code results} score columns and the average KinchRanks from the last ranking of the same list, and only calculates
+	 * the results that have changed since. A competitor keeps their average KinchRank if none of their results have changed.<br><br>
+	 * 
+	 * This only works if the KinchRanks are calculated against the same results as last time. When a WR or a relative best has moved, the
+	 * whole event column changes, so everyone is calculated again.
+	 * @param previous The last ranking, or {@code null} if there isn't one.
 	 */
-	public void fillKinchWithMBLD(boolean relative) throws IOException
+	public void updateKinch(RankState previous)
 	{
-		for(int i = 0; i < wcaIds.length; i++)
+		fillMBLDPoints(relative);
+		if(previous == null || !previous.sameBaselines(relative, fastestIndex, mbldBest))
 		{
-			mbld[i] = Util.parseMBLD(kinchRaw[i][17]);
+			log(">> " + (previous == null ? "There is no last ranking" : "A best result has moved since the last ranking") + ", calculating everyone");
+			results.kinch(fastestIndex, relative, baselines.getRecord(17));
+			return;
 		}
-
-		double fastest;
-		if(relative)
-			fastest = Util.findBest(mbld);
-		else
-			fastest = Util.parseMBLD(Parser.parseForWR(Parser.DB_SINGLE, "333mbf"));
 		
+		ResultStore last = previous.getResults();
+		int changed = 0;
 		for(int i = 0; i < wcaIds.length; i++)
 		{
-			kinchDone[i][17] = (mbld[i] / fastest) * 100.0;
+			int competitor = previous.find(wcaIds[i]);
+			boolean same = competitor >= 0;
+			for(int j = 0; j < 18; j++)
+			{
+				if(competitor >= 0 && results.getResult(j, i) == last.getResult(j, competitor))
+				{
+					results.setScore(j, i, last.getScore(j, competitor));
+					continue;
+				}
+				
+				same = false;
+				if(j < 17)
+					results.setScore(j, i, Util.calculateKinch(results.getResult(j, i), fastestIndex[j]));
+				else
+					results.setScore(j, i, (results.getScore(j, i) / mbldBest) * 100.0);
+			}
+			
+			if(same)
+				results.setKinch(i, last.getKinch(competitor));
+			else
+			{
+				results.average(i);
+				changed++;
+			}
 		}
+		log(">> " + changed + " of " + wcaIds.length + " competitors have changed since the last ranking");
 	}
 
 	/**
-	 * This method calculates the average KinchRank and outputs it into the {@code finalKinch} array.
+	 * This method takes all the processed data and outputs it into a CSV file, and any other outputs (see {@link #addOutput(File)}), from
+	 * the highest average KinchRank to the lowest.
+	 * @param file The file it outputs to.
+	 * @throws IOException
 	 */
-	private void calculateAverageKinchRank()
+	private void fillCSV(File file) throws IOException
 	{
-		for(int i = 0; i < wcaIds.length; i++)
+		List<File> files = new ArrayList<File>();
+		files.add(file);
+		files.addAll(extraOutputs);
+		try(RowSink sink = MultiSink.open(files, decimals))
 		{
-			finalKinch[i] = Util.calculateAverage(kinchDone[i]);
+			write(sink);
 		}
 	}
 	
 	/**
-	 * This method takes all the processed data and outputs it into a CSV file.
-	 * @param file The file it outputs to.
+	 * This method streams all the processed data into a {@link RowSink}, from the highest average KinchRank to the lowest.
+	 * @param sink The sink.
 	 * @throws IOException
 	 */
-	private void fillCSV(File file) throws IOException
+	public void write(RowSink sink) throws IOException
 	{
-		CSVWriter writer = new CSVWriter(new FileWriter(file));
-
-		String[] header = {"Person", "KinchRank", "222", "333", "444", "555", "666", "777", "333oh", "333ft", "333fm", "minx", "pyram", "sq1", "clock", "skewb", "333bf", "444bf", "555bf", "333mbf"};
-		writer.writeNext(header);
-
-		String[][] csvOut = new String[wcaIds.length][20];
+		double[] kinch = new double[wcaIds.length];
 		for(int i = 0; i < wcaIds.length; i++)
+			kinch[i] = results.getKinch(i);
+		int[] order = Util.sortDescending(kinch);
+		
+		RowSink.Type[] types = new RowSink.Type[HEADER.length];
+		Arrays.fill(types, RowSink.Type.DECIMAL);
+		types[0] = RowSink.Type.TEXT;
+		sink.writeHeader(HEADER, types);
+		for(int competitor : order)
 		{
-			for(int j = 0; j < csvOut[0].length; j++)
-			{
-				if(j == 0)
-					csvOut[i][0] = wcaIds[i];
-				else if(j == 1)
-					csvOut[i][1] = Double.toString(finalKinch[i]);
-				else
-				{
-					csvOut[i][j] = Double.toString(kinchDone[i][j - 2]);
-				}
-			}
+			sink.writeField(wcaIds[competitor]);
+			sink.writeField(kinch[competitor]);
+			for(int j = 0; j < RanksIndex.EVENT_COUNT; j++)
+				sink.writeField(results.getScore(j, competitor));
+			sink.endRow();
 		}
-		
-		Arrays.sort(csvOut, new Comparator<String[]>() {
-			@Override
-			public int compare(String[] first, String[] second)
-			{
-				Double d1 = Double.valueOf(first[1]);
-				Double d2 = Double.valueOf(second[1]);
-				
-				return -d1.compareTo(d2);
-			}
-		});
-		
-		for(int i = 0; i < wcaIds.length; i++)
-			writer.writeNext(csvOut[i]);
+	}
 
-		writer.close();
+	/**
+	 * Sets whether the {@link ResultStore} columns are kept off-heap in direct buffers, which keeps very large rosters out of the garbage collector's way.
+	 * @param offHeap Flags whether to keep the columns off-heap.
+	 */
+	public void setOffHeap(boolean offHeap)
+	{
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Sets the amount of threads used to read the WCA database files. With more than one, both files are read at the same time and each
+	 * is split into chunks that are read in parallel.
+	 * @param parallelism The amount of threads. 1 or less reads the files one after the other.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets whether the WCA database is read straight out of the downloaded .zip file. This skips extracting the whole database to the
+	 * exports folder and reading it back, since only the Single and Average entries are inflated.
+	 * @param fromArchive Flags whether to read the .zip file instead of extracting it.
+	 */
+	public void setFromArchive(boolean fromArchive)
+	{
+		this.fromArchive = fromArchive;
+	}
+
+	/**
+	 * Sets whether the WCA database is indexed while it is being downloaded, rather than once the download is done (see {@link Pipeline}).
+	 * The database is then read straight out of the .zip file, as with {@link #setFromArchive(boolean)}, and always downloaded as a single
+	 * stream.
+	 * @param pipelined Flags whether to download and index the database at the same time.
+	 */
+	public void setPipelined(boolean pipelined)
+	{
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * Reads the WCA IDs from the designated file, unless they have already been read.
+	 * @return The WCA IDs.
+	 * @throws IOException
+	 */
+	public String[] readWcaIds() throws IOException
+	{
+		if(wcaIds == null)
+			wcaIds = Parser.readFromFile(wcaIdFile);
+		return wcaIds;
+	}
+
+	public File getOutputFile()
+	{
+		return outputFile;
+	}
+
+	/**
+	 * @return The results, KinchRanks and average KinchRanks, in the same order as the WCA IDs, once {@link #calculate(RanksIndex)} has run.
+	 */
+	public ResultStore getResults()
+	{
+		return results;
+	}
+
+	/**
+	 * Sets whether only the competitors whose results have changed since the last ranking of the same list are calculated. Each ranking is
+	 * saved next to the output file (see {@link RankState}) for the next one to start from.
+	 * @param incremental Flags whether to start from the last ranking.
+	 */
+	public void setIncremental(boolean incremental)
+	{
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Sets whether the WCA database is loaded from a {@link Snapshot} when one exists for it. When there isn't one, or the database has changed
+	 * since it was made, the database files are read, and only the lines of the competitors in the list are parsed. No snapshot is made then,
+	 * since it would have to hold everyone: ranking everyone ({@link World}), a {@link Batch} of lists or the {@link Server} makes one.
+	 * @param snapshot Flags whether to use snapshots.
+	 */
+	public void setSnapshot(boolean snapshot)
+	{
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Sets the amount of decimals the KinchRanks are written to the CSV file with.
+	 * @param decimals The amount of decimals, from 0 to {@link Util#MAX_DECIMALS}.
+	 */
+	public void setDecimals(int decimals)
+	{
+		this.decimals = decimals;
+	}
+
+	/**
+	 * Adds a file the KinchRanks are written to as well as the output file. Its format is found from its extension, see
+	 * {@link MultiSink#open(File, int)}.
+	 * @param file The file.
+	 */
+	public void addOutput(File file)
+	{
+		extraOutputs.add(file);
+	}
+
+	/**
+	 * Changes what receives the progress of the run, which is the progress bar for the GUI, the console otherwise, and nothing for a quiet
+	 * {@code Main}.
+	 * @param listener The listener.
+	 */
+	public void setProgressListener(ProgressListener listener)
+	{
+		progress = listener;
+	}
+
+	/**
+	 * Prints a line to the console, unless this is a quiet {@code Main} (see {@link #Main(String[], boolean)}).
+	 * @param line The line.
+	 */
+	private void log(String line)
+	{
+		if(verbose)
+			System.out.println(line);
 	}
 
 	@Override
 	public void run() {
+		failure = null;
 		try {
 			start();
 		} catch (Exception e) {
-			// TODO: handle exception
+			failure = e;
+			System.out.println("> Ranking failed: " + e);
 		}
-		
 	}
 }
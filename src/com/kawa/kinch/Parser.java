@@ -4,9 +4,25 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
+import com.kawa.util.BlockingPipe;
+import com.kawa.util.Metrics;
 import com.opencsv.CSVReader;
 
 /**
@@ -26,6 +42,36 @@ public class Parser
 	 */
 	public static final File DB_SINGLE = new File("." + File.separator + "exports" + File.separator + "WCA_export_RanksSingle.tsv");
 	
+	/**
+	 * The name of the Average database inside the WCA database .zip file.
+	 */
+	public static final String ENTRY_AVERAGE = "WCA_export_RanksAverage.tsv";
+	
+	/**
+	 * The name of the Single database inside the WCA database .zip file.
+	 */
+	public static final String ENTRY_SINGLE = "WCA_export_RanksSingle.tsv";
+	
+	/**
+	 * The location of the Persons database, which holds each competitor's country.
+	 */
+	public static final File DB_PERSONS = new File("." + File.separator + "exports" + File.separator + "WCA_export_Persons.tsv");
+	
+	/**
+	 * The location of the Countries database, which holds each country's continent.
+	 */
+	public static final File DB_COUNTRIES = new File("." + File.separator + "exports" + File.separator + "WCA_export_Countries.tsv");
+	
+	/**
+	 * The name of the Persons database inside the WCA database .zip file.
+	 */
+	public static final String ENTRY_PERSONS = "WCA_export_Persons.tsv";
+	
+	/**
+	 * The name of the Countries database inside the WCA database .zip file.
+	 */
+	public static final String ENTRY_COUNTRIES = "WCA_export_Countries.tsv";
+	
 	public static int num = 0;
 	
 	/**
@@ -82,6 +128,354 @@ public class Parser
 		return wr;
 	}
 	
+	/**
+	 * Indexes the downloaded WCA database, either from its {@link Snapshot} or by reading the database files. When snapshots are used and the
+	 * files have to be read for everyone, a snapshot of them is made for the next run. When they have to be read for a list of WCA IDs, only
+	 * the lines of the competitors in the list are parsed and no snapshot is made, since it would have to hold everyone.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to read the files with.
+	 * @param fromArchive Flags whether to read the database straight out of the downloaded .zip file, rather than the extracted files.
+	 * @param snapshot Flags whether to load and save snapshots.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadDatabase(String[] wcaIds, int parallelism, boolean fromArchive, boolean snapshot) throws IOException
+	{
+		if(!snapshot)
+			return readDatabase(wcaIds, parallelism, fromArchive);
+		
+		String key = fromArchive ? Snapshot.key(Retriever.getDatabaseFile()) : Snapshot.key(DB_AVERAGE, DB_SINGLE);
+		RanksIndex index = Snapshot.read(Snapshot.DEFAULT_FILE, key, wcaIds);
+		if(index != null)
+		{
+			System.out.println(">> Loaded the database from the snapshot");
+			return index;
+		}
+		
+		if(wcaIds != null)
+			return readDatabase(wcaIds, parallelism, fromArchive);
+		
+		index = readDatabase(null, parallelism, fromArchive);
+		System.out.println(">> Saving a snapshot of the database");
+		Snapshot.write(index, key, Snapshot.DEFAULT_FILE);
+		return index;
+	}
+	
+	/**
+	 * Indexes the downloaded WCA database by reading the database files.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to read the files with.
+	 * @param fromArchive Flags whether to read the database straight out of the downloaded .zip file.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	private static RanksIndex readDatabase(String[] wcaIds, int parallelism, boolean fromArchive) throws IOException
+	{
+		if(fromArchive)
+			return loadIndexFromArchive(Retriever.getDatabaseFile(), wcaIds, parallelism);
+		return loadIndex(wcaIds, parallelism);
+	}
+	
+	/**
+	 * Builds a {@link RanksIndex} of every event used for KinchRanks from the default database files. Each file is only read once.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadIndex(String[] wcaIds) throws IOException
+	{
+		return loadIndex(DB_AVERAGE, DB_SINGLE, wcaIds);
+	}
+	
+	/**
+	 * Builds a {@link RanksIndex} of every event used for KinchRanks from the default database files, using several threads.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to use. 1 or less reads the files one after the other on the calling thread.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadIndex(String[] wcaIds, int parallelism) throws IOException
+	{
+		return loadIndex(DB_AVERAGE, DB_SINGLE, wcaIds, parallelism);
+	}
+	
+	/**
+	 * Builds a {@link RanksIndex} of every event used for KinchRanks. Unlike {@link #parse(File, String, String)}, each file is only read once,
+	 * no matter how many WCA IDs or events are being looked for, and it is read through a {@link RanksScanner} rather than OpenCSV.
+	 * @param average The Average database file.
+	 * @param single The Single database file.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadIndex(File average, File single, String[] wcaIds) throws IOException
+	{
+		RanksIndex index = wcaIds == null ? new RanksIndex() : RanksIndex.forRoster(wcaIds);
+		IdSet roster = wcaIds == null ? null : IdSet.of(wcaIds);
+		new RanksScanner(Main.EVENTS_AVERAGE, 0).setRoster(roster).scan(average, index);
+		new RanksScanner(Main.EVENTS_BESTOF, Main.EVENTS_AVERAGE.length).setRoster(roster).scan(single, index);
+		return index;
+	}
+	
+	/**
+	 * Builds a {@link RanksIndex} of every event used for KinchRanks, using several threads. Both files are read at the same time, and each
+	 * of them is split into chunks that are read in parallel on a {@link ForkJoinPool} (see {@link RanksScanner#task(File, RanksIndex, int)}).
+	 * @param average The Average database file.
+	 * @param single The Single database file.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to use. 1 or less reads the files one after the other on the calling thread.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadIndex(File average, File single, String[] wcaIds, int parallelism) throws IOException
+	{
+		if(parallelism <= 1)
+			return loadIndex(average, single, wcaIds);
+		
+		RanksIndex index = wcaIds == null ? new RanksIndex() : RanksIndex.forRoster(wcaIds);
+		IdSet roster = wcaIds == null ? null : IdSet.of(wcaIds);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			ForkJoinTask<RanksIndex> averages = pool.submit(new RanksScanner(Main.EVENTS_AVERAGE, 0).setRoster(roster).task(average, index, parallelism * 4));
+			ForkJoinTask<RanksIndex> singles = pool.submit(new RanksScanner(Main.EVENTS_BESTOF, Main.EVENTS_AVERAGE.length).setRoster(roster).task(single, index, parallelism * 4));
+			index.merge(averages.join());
+			index.merge(singles.join());
+		}
+		catch(UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return index;
+	}
+	
+	/**
+	 * Builds a {@link RanksIndex} of every event used for KinchRanks straight out of the WCA database .zip file, without extracting it. Only
+	 * the Average and Single entries are inflated, and they are parsed as they are inflated, so nothing is written to disk.
+	 * @param archive The WCA database .zip file.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to use. With more than 1, both entries are inflated and parsed at the same time.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadIndexFromArchive(File archive, String[] wcaIds, int parallelism) throws IOException
+	{
+		final RanksIndex index = wcaIds == null ? new RanksIndex() : RanksIndex.forRoster(wcaIds);
+		final IdSet roster = wcaIds == null ? null : IdSet.of(wcaIds);
+		try(final ZipFile zip = new ZipFile(archive))
+		{
+			final ZipEntry average = getEntry(zip, ENTRY_AVERAGE);
+			final ZipEntry single = getEntry(zip, ENTRY_SINGLE);
+			
+			if(parallelism <= 1)
+			{
+				scanEntry(zip, average, new RanksScanner(Main.EVENTS_AVERAGE, 0).setRoster(roster), index);
+				scanEntry(zip, single, new RanksScanner(Main.EVENTS_BESTOF, Main.EVENTS_AVERAGE.length).setRoster(roster), index);
+				return index;
+			}
+			
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+			try
+			{
+				Future<RanksIndex> averages = executor.submit(new Callable<RanksIndex>() {
+					@Override
+					public RanksIndex call() throws IOException
+					{
+						RanksIndex partial = index.newPartial();
+						scanEntry(zip, average, new RanksScanner(Main.EVENTS_AVERAGE, 0).setRoster(roster), partial);
+						return partial;
+					}
+				});
+				Future<RanksIndex> singles = executor.submit(new Callable<RanksIndex>() {
+					@Override
+					public RanksIndex call() throws IOException
+					{
+						RanksIndex partial = index.newPartial();
+						scanEntry(zip, single, new RanksScanner(Main.EVENTS_BESTOF, Main.EVENTS_AVERAGE.length).setRoster(roster), partial);
+						return partial;
+					}
+				});
+				index.merge(averages.get());
+				index.merge(singles.get());
+			}
+			catch(InterruptedException e)
+			{
+				throw new IOException("Interrupted while reading " + archive, e);
+			}
+			catch(ExecutionException e)
+			{
+				if(e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException("Error reading " + archive, e.getCause());
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Builds a {@link RanksIndex} of every event used for KinchRanks from the WCA database .zip file as a stream, such as while it's being
+	 * downloaded (see {@link Pipeline}). The entries are read in the order they are in the .zip file: the Average and Single entries are parsed
+	 * as they are inflated, the entries before them are inflated and thrown away (a stream can't skip them), and once both of them are read,
+	 * the rest of the stream is read through without being inflated.
+	 * @param archive The stream of the .zip file, which is read to its end but not closed.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to use. With more than 1, each entry is parsed on another thread while it's inflated, with at
+	 * most {@link Pipeline#INFLATE_CHUNKS} chunks of it waiting in between.
+	 * @return The index.
+	 * @throws IOException If the stream isn't a .zip file, or either entry isn't in it.
+	 */
+	public static RanksIndex loadIndexFromStream(InputStream archive, String[] wcaIds, int parallelism) throws IOException
+	{
+		final RanksIndex index = wcaIds == null ? new RanksIndex() : RanksIndex.forRoster(wcaIds);
+		final IdSet roster = wcaIds == null ? null : IdSet.of(wcaIds);
+		ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(2) : null;
+		List<Future<RanksIndex>> partials = new ArrayList<Future<RanksIndex>>();
+		boolean average = false, single = false;
+		try
+		{
+			ZipInputStream zip = new ZipInputStream(archive);
+			ZipEntry entry;
+			while(!(average && single) && (entry = zip.getNextEntry()) != null)
+			{
+				final RanksScanner scanner;
+				if(!average && isEntry(entry, ENTRY_AVERAGE))
+				{
+					scanner = new RanksScanner(Main.EVENTS_AVERAGE, 0).setRoster(roster);
+					average = true;
+				}
+				else if(!single && isEntry(entry, ENTRY_SINGLE))
+				{
+					scanner = new RanksScanner(Main.EVENTS_BESTOF, Main.EVENTS_AVERAGE.length).setRoster(roster);
+					single = true;
+				}
+				else
+					continue;
+
+				if(executor == null)
+				{
+					scanner.scan(zip, index);
+					if(entry.getSize() > 0)
+						Metrics.get().addInflated(entry.getSize());
+					continue;
+				}
+
+				final BlockingPipe pipe = new BlockingPipe(Pipeline.INFLATE_CHUNKS, BlockingPipe.DEFAULT_CHUNK);
+				Future<RanksIndex> task = executor.submit(new Callable<RanksIndex>() {
+					@Override
+					public RanksIndex call() throws IOException
+					{
+						RanksIndex partial = index.newPartial();
+						try(InputStream in = pipe.getInput())
+						{
+							scanner.scan(in, partial);
+						}
+						return partial;
+					}
+				});
+				partials.add(task);
+				byte[] buffer = new byte[BlockingPipe.DEFAULT_CHUNK];
+				int read;
+				long inflated = 0;
+				try
+				{
+					while((read = zip.read(buffer)) != -1)
+					{
+						pipe.getOutput().write(buffer, 0, read);
+						inflated += read;
+					}
+					pipe.getOutput().close();
+				}
+				catch(IOException | RuntimeException e)
+				{
+					pipe.fail(e);
+					// if the parser failed first, which closed the pipe, its failure is the one to report
+					task.get();
+					throw e;
+				}
+				Metrics.get().addInflated(inflated);
+			}
+
+			for(Future<RanksIndex> partial : partials)
+				index.merge(partial.get());
+		}
+		catch(InterruptedException e)
+		{
+			throw new IOException("Interrupted while reading the database", e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Error reading the database", e.getCause());
+		}
+		finally
+		{
+			if(executor != null)
+				executor.shutdownNow();
+		}
+
+		if(!average)
+			throw new IOException(ENTRY_AVERAGE + " was not found in the database");
+		if(!single)
+			throw new IOException(ENTRY_SINGLE + " was not found in the database");
+
+		// whatever is left is read through, so that whoever is writing the stream can finish
+		byte[] rest = new byte[BlockingPipe.DEFAULT_CHUNK];
+		while(archive.read(rest) != -1)
+		{
+		}
+		return index;
+	}
+
+	private static boolean isEntry(ZipEntry entry, String name)
+	{
+		return entry.getName().equals(name) || entry.getName().endsWith("/" + name);
+	}
+
+	/**
+	 * Scans an entry of the WCA database .zip file as it is inflated, and counts the inflated bytes in {@link Metrics}.
+	 */
+	private static void scanEntry(ZipFile zip, ZipEntry entry, RanksScanner scanner, RanksIndex index) throws IOException
+	{
+		try(InputStream in = zip.getInputStream(entry))
+		{
+			scanner.scan(in, index);
+		}
+		if(entry.getSize() > 0)
+			Metrics.get().addInflated(entry.getSize());
+	}
+
+	/**
+	 * Finds an entry of the WCA database .zip file, whether or not it is inside a folder.
+	 * @param zip The .zip file.
+	 * @param name The name of the entry.
+	 * @return The entry.
+	 * @throws IOException If the entry doesn't exist.
+	 */
+	static ZipEntry getEntry(ZipFile zip, String name) throws IOException
+	{
+		ZipEntry entry = zip.getEntry(name);
+		if(entry != null)
+			return entry;
+		
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while(entries.hasMoreElements())
+		{
+			entry = entries.nextElement();
+			if(entry.getName().endsWith("/" + name))
+				return entry;
+		}
+		throw new IOException(name + " was not found in " + zip.getName());
+	}
+	
 	/**
 	 * Reads a file. This is used for reading the user-defined WCA IDs file.
 	 * @param file
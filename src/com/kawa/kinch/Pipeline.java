@@ -0,0 +1,142 @@
+package com.kawa.kinch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.kawa.util.BlockingPipe;
+import com.kawa.util.ProgressListener;
+
+/**
+ * Downloads, inflates and indexes the WCA database at the same time, rather than one after the other. The stages are joined by
+ * {@link BlockingPipe}s, which only hold a few chunks each, so a stage that is ahead waits for the next one and memory stays flat no matter
+ * how large the database is:<br><br>
+ *
+ * <code>download</code>: on its own thread, writes the .zip file to disk as usual (so the next run can use it) and to the first pipe
+ * (see {@link Retriever#streamDatabase(ProgressListener, java.io.OutputStream)})<br>
+ * <code>inflate</code>: reads the first pipe as a .zip stream, and inflates the Average and Single entries as their bytes come in<br>
+ * <code>parse</code>: scans each entry as it's inflated, on the inflating thread, or with more than one thread, on a thread of its own
+ * fed by another pipe (see {@link Parser#loadIndexFromStream(InputStream, String[], int)})<br><br>
+ *
+ * So the index is done shortly after the last byte of the ranks entries has been downloaded, rather than after the download, the extraction
+ * and the parsing. If the database hasn't changed since the last download, nothing is downloaded, and the copy on disk is read as usual.
+ * @author Kawa
+ */
+public class Pipeline
+{
+	/**
+	 * The amount of chunks of the downloaded .zip file that can wait to be inflated, of {@link BlockingPipe#DEFAULT_CHUNK} bytes each.
+	 */
+	public static final int DOWNLOAD_CHUNKS = 32;
+
+	/**
+	 * The amount of chunks of an inflated entry that can wait to be parsed, of {@link BlockingPipe#DEFAULT_CHUNK} bytes each.
+	 */
+	public static final int INFLATE_CHUNKS = 16;
+
+	private Pipeline()
+	{
+	}
+
+	/**
+	 * Downloads the WCA database and indexes it as it comes in. When snapshots are used and a new database is downloaded for everyone, a
+	 * snapshot of it is made once the download is done, the same as {@link Parser#loadDatabase(String[], int, boolean, boolean)}.
+	 * @param listener Receives the progress of the download.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @param parallelism The amount of threads to parse with.
+	 * @param snapshot Flags whether to load and save snapshots.
+	 * @return The index.
+	 * @throws IOException
+	 */
+	public static RanksIndex loadDatabase(final ProgressListener listener, String[] wcaIds, int parallelism, boolean snapshot) throws IOException
+	{
+		final BlockingPipe pipe = new BlockingPipe(DOWNLOAD_CHUNKS, BlockingPipe.DEFAULT_CHUNK);
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "database-download");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try
+		{
+			Future<Boolean> download = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws IOException
+				{
+					try
+					{
+						boolean downloaded = Retriever.streamDatabase(listener, pipe.getOutput());
+						pipe.getOutput().close();
+						return downloaded;
+					}
+					catch(IOException | RuntimeException e)
+					{
+						pipe.fail(e);
+						throw e;
+					}
+				}
+			});
+
+			RanksIndex index = null;
+			try(PushbackInputStream in = new PushbackInputStream(pipe.getInput()))
+			{
+				// nothing comes through the pipe if the copy on disk is kept
+				int first = in.read();
+				if(first >= 0)
+				{
+					in.unread(first);
+					index = Parser.loadIndexFromStream(in, wcaIds, parallelism);
+				}
+			}
+			catch(IOException e)
+			{
+				// if the download failed, which stopped the pipe, its failure is the one to report
+				if(download.isDone())
+					get(download);
+				throw e;
+			}
+
+			boolean downloaded = get(download);
+			if(!downloaded || index == null)
+				return Parser.loadDatabase(wcaIds, parallelism, true, snapshot);
+
+			if(snapshot && wcaIds == null)
+			{
+				System.out.println(">> Saving a snapshot of the database");
+				Snapshot.write(index, Snapshot.key(Retriever.getDatabaseFile()), Snapshot.DEFAULT_FILE);
+			}
+			return index;
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static boolean get(Future<Boolean> download) throws IOException
+	{
+		try
+		{
+			return download.get();
+		}
+		catch(InterruptedException e)
+		{
+			throw new IOException("Interrupted while downloading the database", e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Error downloading the database", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.kawa.kinch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves a finished ranking, so that the next ranking of the same list only has to calculate the results that changed in between (see
+ * {@link Main#setIncremental(boolean)}).<br><br>
+ *
+ * The state holds the results each KinchRank was calculated against, and every competitor's results, KinchRanks and average KinchRank.
+ * A competitor whose results are all the same as last time keeps their KinchRanks, but only if the results they were calculated against
+ * are all the same too: once a WR or a relative best moves, the whole event column changes. The file looks like this, in big-endian order:<br><br>
+ *
+ * <code>int magic, int version, boolean relative, int eventCount, int[eventCount] best, double mbldBest, int size</code><br>
+ * followed by each competitor as <code>string wcaId, int[eventCount] results, double[eventCount] scores, double kinch</code>.
+ * @author Kawa
+ */
+public class RankState
+{
+	private static final int MAGIC = 0x4B535441;
+
+	/**
+	 * The version of the file layout and of the way KinchRanks are calculated, which should be changed whenever either changes.
+	 */
+	private static final int VERSION = 2;
+
+	private boolean relative;
+	private int[] best;
+	private double mbldBest;
+	private String[] wcaIds;
+	private ResultStore results;
+	private Map<String, Integer> competitors;
+
+	private RankState()
+	{
+	}
+
+	/**
+	 * Creates the state file of an output file.
+	 * @param outputFile The output CSV file.
+	 * @return The state file, next to it.
+	 */
+	public static File getFile(File outputFile)
+	{
+		return new File(outputFile.getPath() + ".state");
+	}
+
+	/**
+	 * Saves a finished ranking. It is written to a temporary file first, which then replaces the state file.
+	 * @param file The state file.
+	 * @param wcaIds The WCA IDs, in the same order as the store.
+	 * @param relative Flags whether the KinchRanks were calculated from the best results found, or from the WRs.
+	 * @param best The results the KinchRanks were calculated against, one per event column.
+	 * @param mbldBest The MBLD points the MBLD KinchRanks were calculated against.
+	 * @param results The results, KinchRanks and average KinchRanks.
+	 * @throws IOException
+	 */
+	public static void write(File file, String[] wcaIds, boolean relative, int[] best, double mbldBest, ResultStore results) throws IOException
+	{
+		File temp = new File(file.getPath() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeBoolean(relative);
+			out.writeInt(RanksIndex.EVENT_COUNT);
+			for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				out.writeInt(best[column]);
+			out.writeDouble(mbldBest);
+
+			out.writeInt(wcaIds.length);
+			for(int i = 0; i < wcaIds.length; i++)
+			{
+				out.writeUTF(wcaIds[i]);
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+					out.writeInt(results.getResult(column, i));
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+					out.writeDouble(results.getScore(column, i));
+				out.writeDouble(results.getKinch(i));
+			}
+		}
+
+		try
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException e)
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Reads a saved ranking.
+	 * @param file The state file.
+	 * @return The state, or {@code null} if there is none, or it is from an older version or cut short.
+	 * @throws IOException
+	 */
+	public static RankState read(File file) throws IOException
+	{
+		if(!file.isFile())
+			return null;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+		{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+
+			RankState state = new RankState();
+			state.relative = in.readBoolean();
+			if(in.readInt() != RanksIndex.EVENT_COUNT)
+				return null;
+			state.best = new int[RanksIndex.EVENT_COUNT];
+			for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				state.best[column] = in.readInt();
+			state.mbldBest = in.readDouble();
+
+			int size = in.readInt();
+			state.wcaIds = new String[size];
+			state.results = ResultStore.allocate(size, false);
+			state.competitors = new HashMap<String, Integer>(size * 2);
+			for(int i = 0; i < size; i++)
+			{
+				state.wcaIds[i] = in.readUTF();
+				state.competitors.put(state.wcaIds[i], i);
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+					state.results.setResult(column, i, in.readInt());
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+					state.results.setScore(column, i, in.readDouble());
+				state.results.setKinch(i, in.readDouble());
+			}
+			return state;
+		}
+		catch(EOFException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the KinchRanks of this state were calculated against the same results as a new ranking will be. If they weren't, none
+	 * of them can be kept.
+	 * @param relative Flags whether the new KinchRanks are calculated from the best results found, or from the WRs.
+	 * @param best The results the new KinchRanks are calculated against, one per event column.
+	 * @param mbldBest The MBLD points the new MBLD KinchRanks are calculated against.
+	 * @return {@code true} if the KinchRanks of competitors whose results haven't changed can be kept.
+	 */
+	public boolean sameBaselines(boolean relative, int[] best, double mbldBest)
+	{
+		if(this.relative != relative || Double.compare(this.mbldBest, mbldBest) != 0)
+			return false;
+		for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+		{
+			if(this.best[column] != best[column])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a competitor.
+	 * @param wcaId The WCA ID.
+	 * @return The competitor's position in {@link #getResults()}, or -1 if they weren't ranked last time.
+	 */
+	public int find(String wcaId)
+	{
+		Integer competitor = competitors.get(wcaId);
+		return competitor == null ? -1 : competitor;
+	}
+
+	/**
+	 * @return The results, KinchRanks and average KinchRanks of the saved ranking.
+	 */
+	public ResultStore getResults()
+	{
+		return results;
+	}
+
+	/**
+	 * @return The amount of competitors in the saved ranking.
+	 */
+	public int size()
+	{
+		return wcaIds.length;
+	}
+}
@@ -0,0 +1,268 @@
+package com.kawa.kinch;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory index of the WCA database, built by {@link Parser#loadIndex} from a single pass over each ranks file.<br><br>
+ *
+ * Results are looked up by WCA ID and event column. The columns follow the order of {@link Main#EVENTS_AVERAGE}, followed by
+ * {@link Main#EVENTS_BESTOF}, which is the same layout {@link Main} uses for each competitor's row. A result that doesn't exist is 0.<br><br>
+ *
+ * Each competitor in the index gets an ordinal, in the order they were first found. The WCA IDs are kept packed (see {@link WcaId}) in an
+ * {@link IdSet}, and the results are kept in one {@code int} column per event, so building the index doesn't create any objects
+ * per result.
+ * @author Kawa
+ */
+public class RanksIndex implements RanksScanner.Handler
+{
+	/**
+	 * The number of event columns each competitor has.
+	 */
+	public static final int EVENT_COUNT = Main.EVENTS_AVERAGE.length + Main.EVENTS_BESTOF.length;
+
+	/**
+	 * The packed WCA IDs, whose ordinals are the competitors' ordinals.
+	 */
+	private final IdSet ids;
+
+	/**
+	 * The results, one column per event, indexed by ordinal.
+	 */
+	private int[][] results;
+
+	/**
+	 * The world rankings of the results, one column per event, indexed by ordinal.
+	 */
+	private int[][] ranks;
+
+	/**
+	 * The lowest result found in each column.
+	 */
+	private final int[] lowest = new int[EVENT_COUNT];
+
+	/**
+	 * The world records, found from every result in the database, whether or not the competitor is kept.
+	 */
+	private final Baselines baselines = new Baselines();
+
+	/**
+	 * The amount of competitors in the index.
+	 */
+	private int size;
+
+	/**
+	 * Flags whether competitors that aren't in the index yet are ignored rather than added.
+	 */
+	private boolean closed;
+
+	public RanksIndex()
+	{
+		this(1024);
+	}
+
+	/**
+	 * @param capacity The amount of competitors to make room for.
+	 */
+	public RanksIndex(int capacity)
+	{
+		ids = new IdSet(capacity);
+		results = new int[EVENT_COUNT][Math.max(16, capacity)];
+		ranks = new int[EVENT_COUNT][Math.max(16, capacity)];
+		Arrays.fill(lowest, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates an index that only keeps the results of a set list of competitors.
+	 * @param wcaIds The WCA IDs.
+	 * @return The index.
+	 */
+	public static RanksIndex forRoster(String[] wcaIds)
+	{
+		RanksIndex index = new RanksIndex(wcaIds.length);
+		for(String id : wcaIds)
+		{
+			long packed = WcaId.pack(id);
+			if(packed != WcaId.INVALID)
+				index.add(packed);
+		}
+		index.closed = true;
+		return index;
+	}
+
+	/**
+	 * Returns the result of a competitor in an event column.
+	 * @param wcaId The WCA ID.
+	 * @param column The event column.
+	 * @return The result, or 0 if it doesn't exist.
+	 */
+	public int get(String wcaId, int column)
+	{
+		int ordinal = ordinal(WcaId.pack(wcaId));
+		return ordinal < 0 ? 0 : results[column][ordinal];
+	}
+
+	/**
+	 * Returns the result of a competitor in an event column.
+	 * @param ordinal The competitor's ordinal.
+	 * @param column The event column.
+	 * @return The result, or 0 if it doesn't exist.
+	 */
+	public int get(int ordinal, int column)
+	{
+		return results[column][ordinal];
+	}
+
+	/**
+	 * Returns the world ranking of a competitor's result in an event column.
+	 * @param ordinal The competitor's ordinal.
+	 * @param column The event column.
+	 * @return The world ranking, or 0 if there is no result.
+	 */
+	public int getRank(int ordinal, int column)
+	{
+		return ranks[column][ordinal];
+	}
+
+	/**
+	 * Copies all the results of a competitor into a row.
+	 * @param wcaId The WCA ID.
+	 * @param row The row to fill, which should be at least {@link #EVENT_COUNT} long.
+	 */
+	public void fill(String wcaId, int[] row)
+	{
+		int ordinal = ordinal(WcaId.pack(wcaId));
+		for(int i = 0; i < EVENT_COUNT; i++)
+			row[i] = ordinal < 0 ? 0 : results[i][ordinal];
+	}
+
+	/**
+	 * Finds the ordinal of a competitor.
+	 * @param personId The packed WCA ID.
+	 * @return The ordinal, or -1 if the competitor isn't in the index.
+	 */
+	public int ordinal(long personId)
+	{
+		return ids.ordinal(personId);
+	}
+
+	/**
+	 * Returns the lowest result of an event column out of everyone in the index.
+	 * @param column The event column.
+	 * @return The lowest result, or {@link Integer#MAX_VALUE} if nobody has one.
+	 */
+	public int getLowest(int column)
+	{
+		return lowest[column];
+	}
+
+	/**
+	 * @return The world records of the database the index was built from.
+	 */
+	public Baselines getBaselines()
+	{
+		return baselines;
+	}
+
+	/**
+	 * @param ordinal The competitor's ordinal.
+	 * @return The packed WCA ID.
+	 */
+	public long getId(int ordinal)
+	{
+		return ids.get(ordinal);
+	}
+
+	/**
+	 * @return The amount of competitors in the index.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void result(long personId, int column, int best, int worldRank)
+	{
+		if(worldRank == 1)
+			baselines.record(column, best);
+
+		int ordinal = closed ? ordinal(personId) : add(personId);
+		if(ordinal >= 0)
+		{
+			results[column][ordinal] = best;
+			ranks[column][ordinal] = worldRank;
+			if(best > 0 && best < lowest[column])
+				lowest[column] = best;
+		}
+	}
+
+	/**
+	 * Creates an empty index for part of the same database, which keeps the same competitors as this one if it only keeps a set list.
+	 * Once it is filled it can be put back into this one with {@link #merge(RanksIndex)}.
+	 * @return The empty index.
+	 */
+	public RanksIndex newPartial()
+	{
+		if(!closed)
+			return new RanksIndex();
+
+		RanksIndex partial = new RanksIndex(size);
+		for(int ordinal = 0; ordinal < size; ordinal++)
+			partial.add(ids.get(ordinal));
+		partial.closed = true;
+		return partial;
+	}
+
+	/**
+	 * Adds all the results of another index to this one. The two indexes should come from different parts of the database, so no
+	 * result is in both.
+	 * @param partial The other index.
+	 */
+	public void merge(RanksIndex partial)
+	{
+		for(int i = 0; i < partial.size; i++)
+		{
+			long personId = partial.ids.get(i);
+			int ordinal = closed ? ordinal(personId) : add(personId);
+			if(ordinal < 0)
+				continue;
+
+			for(int column = 0; column < EVENT_COUNT; column++)
+			{
+				int result = partial.results[column][i];
+				if(result != 0)
+				{
+					results[column][ordinal] = result;
+					ranks[column][ordinal] = partial.ranks[column][i];
+				}
+			}
+		}
+
+		for(int column = 0; column < EVENT_COUNT; column++)
+			lowest[column] = Math.min(lowest[column], partial.lowest[column]);
+		baselines.merge(partial.baselines);
+	}
+
+	/**
+	 * Finds the ordinal of a competitor, adding them to the index if they aren't in it yet.
+	 * @param personId The packed WCA ID.
+	 * @return The ordinal.
+	 */
+	int add(long personId)
+	{
+		int ordinal = ids.add(personId);
+		if(ordinal == size)
+		{
+			if(size == results[0].length)
+			{
+				for(int i = 0; i < EVENT_COUNT; i++)
+				{
+					results[i] = Arrays.copyOf(results[i], size * 2);
+					ranks[i] = Arrays.copyOf(ranks[i], size * 2);
+				}
+			}
+			size++;
+		}
+		return ordinal;
+	}
+}
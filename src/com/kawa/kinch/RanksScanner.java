@@ -0,0 +1,399 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import com.kawa.util.Metrics;
+
+/**
+ * Reads the WCA ranks files straight from their bytes. The file is memory-mapped and each line is parsed in place, so no characters,
+ * {@link String}s or arrays are created for any of the lines. A line of a ranks file looks like this:<br><br>
+ *
+ * <code>personId &nbsp; eventId &nbsp; best &nbsp; worldRank &nbsp; continentRank &nbsp; countryRank</code><br><br>
+ *
+ * separated by tabs. Lines of events that aren't being looked for, lines of competitors that aren't being looked for (see
+ * {@link #setRoster(IdSet)}), and lines that don't start with a WCA ID (such as the header), are skipped.
+ * @author Kawa
+ */
+public class RanksScanner
+{
+	/**
+	 * Receives every result the scanner finds.
+	 */
+	public interface Handler
+	{
+		/**
+		 * @param personId The packed WCA ID, see {@link WcaId}.
+		 * @param column The event column.
+		 * @param best The result.
+		 * @param worldRank The world ranking of the result.
+		 */
+		void result(long personId, int column, int best, int worldRank);
+	}
+
+	/**
+	 * The largest amount of a file that is mapped at once.
+	 */
+	private static final int WINDOW = 1 << 30;
+
+	/**
+	 * The smallest amount of a file that is worth giving its own task when scanning in parallel.
+	 */
+	private static final int MIN_CHUNK = 8 << 20;
+
+	/**
+	 * The size of the buffer used when scanning a stream.
+	 */
+	private static final int STREAM_BUFFER = 1 << 20;
+
+	/**
+	 * The WCA events being looked for, as bytes.
+	 */
+	private final byte[][] events;
+
+	/**
+	 * The column of the first event.
+	 */
+	private final int offset;
+
+	/**
+	 * The competitors being looked for, or {@code null} for everyone.
+	 */
+	private IdSet roster;
+
+	/**
+	 * @param events The WCA events to look for.
+	 * @param offset The column of the first event.
+	 */
+	public RanksScanner(String[] events, int offset)
+	{
+		this.events = new byte[events.length][];
+		for(int i = 0; i < events.length; i++)
+			this.events[i] = events[i].getBytes(StandardCharsets.US_ASCII);
+		this.offset = offset;
+	}
+
+	/**
+	 * Only looks for some competitors. The lines of everyone else are skipped as soon as their WCA ID has been read, without parsing
+	 * the rest of the line, unless they hold a world record, which is still passed on so that {@link Baselines} can be filled.
+	 * @param roster The competitors to look for, or {@code null} for everyone.
+	 * @return This scanner.
+	 */
+	public RanksScanner setRoster(IdSet roster)
+	{
+		this.roster = roster;
+		return this;
+	}
+
+	/**
+	 * Memory-maps a ranks file and scans all of it.
+	 * @param file The ranks file.
+	 * @param handler Receives the results.
+	 * @throws IOException
+	 */
+	public void scan(File file, Handler handler) throws IOException
+	{
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+		{
+			long size = channel.size();
+			long position = 0;
+			while(position < size)
+			{
+				int length = (int) Math.min(WINDOW, size - position);
+				boolean last = position + length == size;
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				int consumed = scan(buffer, 0, length, last, handler);
+				if(consumed == 0 && !last)
+					throw new IOException("A line in " + file + " is longer than " + WINDOW + " bytes");
+				position += consumed;
+			}
+		}
+	}
+
+	/**
+	 * Scans all of a ranks file from a stream, such as an entry of the WCA database .zip file as it is being inflated. The bytes are read into
+	 * one reusable buffer and parsed in place, the same as a memory-mapped file.
+	 * @param in The stream, which is not closed.
+	 * @param handler Receives the results.
+	 * @throws IOException
+	 */
+	public void scan(InputStream in, Handler handler) throws IOException
+	{
+		byte[] bytes = new byte[STREAM_BUFFER];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int filled = 0;
+		while(true)
+		{
+			int read = in.read(bytes, filled, bytes.length - filled);
+			if(read < 0)
+			{
+				scan(buffer, 0, filled, true, handler);
+				return;
+			}
+			filled += read;
+
+			int consumed = scan(buffer, 0, filled, false, handler);
+			System.arraycopy(bytes, consumed, bytes, 0, filled - consumed);
+			filled -= consumed;
+
+			if(filled == bytes.length)
+			{
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				buffer = ByteBuffer.wrap(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Creates a task that scans a ranks file in parallel when it is run on a {@link java.util.concurrent.ForkJoinPool}. The file is split into
+	 * chunks that end on a newline, and each chunk is scanned into its own partial index from {@link RanksIndex#newPartial()}. The partial
+	 * indexes are then merged, in the order of the file, into the one the task returns.<br><br>
+	 *
+	 * An {@link IOException} is thrown as an {@link UncheckedIOException} when the task is joined.
+	 * @param file The ranks file.
+	 * @param target The index that the results will end up in, which is only used to create the partial indexes.
+	 * @param chunks The amount of chunks to split the file into. Chunks are never smaller than 8 MB or larger than 1 GB.
+	 * @return The task.
+	 */
+	public RecursiveTask<RanksIndex> task(final File file, final RanksIndex target, final int chunks)
+	{
+		return new RecursiveTask<RanksIndex>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected RanksIndex compute()
+			{
+				try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+				{
+					long size = channel.size();
+					long count = Math.max(1, Math.min(chunks, size / MIN_CHUNK));
+					count = Math.max(count, size / (WINDOW / 2) + 1);
+
+					List<Chunk> tasks = new ArrayList<Chunk>();
+					long start = 0;
+					for(long i = 1; i <= count && start < size; i++)
+					{
+						long end = i == count ? size : lineEnd(channel, size * i / count, size);
+						if(end > start)
+							tasks.add(new Chunk(channel, start, end, target.newPartial()));
+						start = Math.max(start, end);
+					}
+
+					invokeAll(tasks);
+
+					RanksIndex merged = target.newPartial();
+					for(Chunk chunk : tasks)
+						merged.merge(chunk.join());
+					return merged;
+				}
+				catch(IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Finds where the line that a position is in ends.
+	 * @param channel The file.
+	 * @param position The position.
+	 * @param size The size of the file.
+	 * @return The position just after the newline, or the size of the file if there isn't one.
+	 * @throws IOException
+	 */
+	private static long lineEnd(FileChannel channel, long position, long size) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while(position < size)
+		{
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if(read < 0)
+				break;
+			for(int i = 0; i < read; i++)
+			{
+				if(buffer.get(i) == '\n')
+					return position + i + 1;
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Scans a part of a file that starts at the beginning of a line and ends at the end of one.
+	 */
+	private class Chunk extends RecursiveTask<RanksIndex>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final RanksIndex partial;
+
+		Chunk(FileChannel channel, long start, long end, RanksIndex partial)
+		{
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.partial = partial;
+		}
+
+		@Override
+		protected RanksIndex compute()
+		{
+			try
+			{
+				int length = (int) (end - start);
+				scan(channel.map(FileChannel.MapMode.READ_ONLY, start, length), 0, length, true, partial);
+				return partial;
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Scans every complete line in part of a buffer.
+	 * @param buffer The bytes.
+	 * @param from Where the first line starts.
+	 * @param to Where the bytes end.
+	 * @param last Flags whether these are the last bytes of the file, in which case a final line without a newline is also scanned.
+	 * @param handler Receives the results.
+	 * @return The amount of bytes that were scanned, which is always up to the end of a line.
+	 */
+	public int scan(ByteBuffer buffer, int from, int to, boolean last, Handler handler)
+	{
+		int start = from;
+		int lines = 0;
+		int matched = 0;
+		while(start < to)
+		{
+			long personId = WcaId.INVALID;
+			if(to - start > WcaId.LENGTH && buffer.get(start + WcaId.LENGTH) == '\t')
+				personId = WcaId.pack(buffer, start);
+
+			int end = start;
+			boolean parse;
+			if(personId == WcaId.INVALID || roster == null || roster.contains(personId))
+			{
+				while(end < to && buffer.get(end) != '\n')
+					end++;
+				parse = personId != WcaId.INVALID;
+			}
+			else
+			{
+				// someone who isn't being looked for, so only a world record (worldRank of exactly 1) is worth parsing
+				int tabs = 0;
+				int worldRank = -1;
+				byte b;
+				while(end < to && (b = buffer.get(end)) != '\n')
+				{
+					if(b == '\t' && ++tabs == 3)
+						worldRank = end + 1;
+					end++;
+				}
+				parse = worldRank > 0 && worldRank + 1 < end && buffer.get(worldRank) == '1' && buffer.get(worldRank + 1) == '\t';
+			}
+
+			if(end == to && !last)
+				break;
+
+			if(parse && line(buffer, personId, start, end, handler))
+				matched++;
+			lines++;
+			start = end + 1;
+		}
+		int scanned = Math.min(start, to) - from;
+		Metrics.get().addScanned(lines, matched, scanned);
+		return scanned;
+	}
+
+	/**
+	 * Parses the rest of a line, after the WCA ID.
+	 * @param buffer The bytes.
+	 * @param personId The packed WCA ID the line starts with.
+	 * @param start Where the line starts.
+	 * @param end Where the line ends, not including the newline.
+	 * @param handler Receives the result.
+	 * @return {@code true} if the line was a result of an event that is being looked for.
+	 */
+	private boolean line(ByteBuffer buffer, long personId, int start, int end, Handler handler)
+	{
+		int position = start + WcaId.LENGTH + 1;
+		int eventEnd = position;
+		while(eventEnd < end && buffer.get(eventEnd) != '\t')
+			eventEnd++;
+
+		int column = column(buffer, position, eventEnd);
+		if(column < 0 || eventEnd == end)
+			return false;
+
+		position = eventEnd + 1;
+		int best = 0;
+		boolean negative = position < end && buffer.get(position) == '-';
+		if(negative)
+			position++;
+		byte b;
+		while(position < end && (b = buffer.get(position)) >= '0' && b <= '9')
+		{
+			best = best * 10 + (b - '0');
+			position++;
+		}
+
+		int worldRank = 0;
+		if(position < end && buffer.get(position) == '\t')
+		{
+			position++;
+			while(position < end && (b = buffer.get(position)) >= '0' && b <= '9')
+			{
+				worldRank = worldRank * 10 + (b - '0');
+				position++;
+			}
+		}
+
+		handler.result(personId, column, negative ? -best : best, worldRank);
+		return true;
+	}
+
+	/**
+	 * Finds the column of an event.
+	 * @param buffer The bytes.
+	 * @param from Where the event starts.
+	 * @param to Where the event ends.
+	 * @return The column, or -1 if the event isn't being looked for.
+	 */
+	private int column(ByteBuffer buffer, int from, int to)
+	{
+		int length = to - from;
+		for(int i = 0; i < events.length; i++)
+		{
+			byte[] event = events[i];
+			if(event.length != length)
+				continue;
+
+			int j = 0;
+			while(j < length && buffer.get(from + j) == event[j])
+				j++;
+			if(j == length)
+				return offset + i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,223 @@
+package com.kawa.kinch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * The country and continent of every competitor in a {@link RanksIndex}, read from the Persons and Countries databases. Countries and
+ * continents are numbered in the order they are found, and each competitor's country is kept by their ordinal in the index.<br><br>
+ *
+ * The columns of both databases are found by the names in their headers, so it doesn't matter what order they are in. A competitor with
+ * more than one row in the Persons database (because they have changed country) is given the country of their current row, the one with
+ * a <code>subid</code> of 1.
+ * @author Kawa
+ */
+public class Regions
+{
+	/**
+	 * The country of a competitor who isn't in the Persons database, or the continent of a country that isn't in the Countries database.
+	 */
+	public static final int UNKNOWN = -1;
+
+	private final List<String> countries = new ArrayList<String>();
+	private final List<String> continents = new ArrayList<String>();
+
+	/**
+	 * The continent of each country.
+	 */
+	private final List<Integer> continentOf = new ArrayList<Integer>();
+
+	/**
+	 * The country of each competitor, by their ordinal in the index.
+	 */
+	private final int[] countryOf;
+
+	private Regions(int size)
+	{
+		countryOf = new int[size];
+		Arrays.fill(countryOf, UNKNOWN);
+	}
+
+	/**
+	 * Reads the regions of everyone in an index from the extracted databases.
+	 * @param index The index.
+	 * @param persons The Persons database file.
+	 * @param countries The Countries database file.
+	 * @return The regions.
+	 * @throws IOException
+	 */
+	public static Regions load(RanksIndex index, File persons, File countries) throws IOException
+	{
+		try(InputStream personsIn = new FileInputStream(persons); InputStream countriesIn = new FileInputStream(countries))
+		{
+			return read(index, personsIn, countriesIn);
+		}
+	}
+
+	/**
+	 * Reads the regions of everyone in an index straight out of the WCA database .zip file.
+	 * @param index The index.
+	 * @param archive The WCA database .zip file.
+	 * @return The regions.
+	 * @throws IOException
+	 */
+	public static Regions loadFromArchive(RanksIndex index, File archive) throws IOException
+	{
+		try(ZipFile zip = new ZipFile(archive);
+				InputStream personsIn = zip.getInputStream(Parser.getEntry(zip, Parser.ENTRY_PERSONS));
+				InputStream countriesIn = zip.getInputStream(Parser.getEntry(zip, Parser.ENTRY_COUNTRIES)))
+		{
+			return read(index, personsIn, countriesIn);
+		}
+	}
+
+	private static Regions read(RanksIndex index, InputStream personsIn, InputStream countriesIn) throws IOException
+	{
+		Regions regions = new Regions(index.size());
+		Map<String, Integer> countryNumbers = new HashMap<String, Integer>();
+		Map<String, Integer> continentNumbers = new HashMap<String, Integer>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(countriesIn, StandardCharsets.UTF_8), 1 << 16);
+		String[] header = readHeader(reader, Parser.ENTRY_COUNTRIES);
+		int idColumn = column(header, "id", Parser.ENTRY_COUNTRIES);
+		int continentColumn = column(header, "continentId", Parser.ENTRY_COUNTRIES);
+		String line;
+		while((line = reader.readLine()) != null)
+		{
+			String[] fields = line.split("\t", -1);
+			if(fields.length <= Math.max(idColumn, continentColumn))
+				continue;
+			regions.country(countryNumbers, fields[idColumn], regions.continent(continentNumbers, fields[continentColumn]));
+		}
+
+		reader = new BufferedReader(new InputStreamReader(personsIn, StandardCharsets.UTF_8), 1 << 16);
+		header = readHeader(reader, Parser.ENTRY_PERSONS);
+		idColumn = column(header, "id", Parser.ENTRY_PERSONS);
+		int countryColumn = column(header, "countryId", Parser.ENTRY_PERSONS);
+		int subidColumn = Arrays.asList(header).indexOf("subid");
+		while((line = reader.readLine()) != null)
+		{
+			String[] fields = line.split("\t", -1);
+			if(fields.length <= Math.max(idColumn, Math.max(countryColumn, subidColumn)))
+				continue;
+			if(subidColumn >= 0 && !fields[subidColumn].equals("1"))
+				continue;
+
+			int ordinal = index.ordinal(WcaId.pack(fields[idColumn]));
+			if(ordinal >= 0)
+				regions.countryOf[ordinal] = regions.country(countryNumbers, fields[countryColumn], UNKNOWN);
+		}
+		return regions;
+	}
+
+	private static String[] readHeader(BufferedReader reader, String name) throws IOException
+	{
+		String header = reader.readLine();
+		if(header == null)
+			throw new IOException(name + " is empty");
+		return header.split("\t", -1);
+	}
+
+	private static int column(String[] header, String column, String name) throws IOException
+	{
+		int index = Arrays.asList(header).indexOf(column);
+		if(index < 0)
+			throw new IOException(name + " has no " + column + " column");
+		return index;
+	}
+
+	/**
+	 * Finds the number of a country, adding it if it hasn't been found yet.
+	 */
+	private int country(Map<String, Integer> numbers, String country, int continent)
+	{
+		Integer number = numbers.get(country);
+		if(number != null)
+			return number;
+		numbers.put(country, countries.size());
+		countries.add(country);
+		continentOf.add(continent);
+		return countries.size() - 1;
+	}
+
+	/**
+	 * Finds the number of a continent, adding it if it hasn't been found yet.
+	 */
+	private int continent(Map<String, Integer> numbers, String continent)
+	{
+		Integer number = numbers.get(continent);
+		if(number != null)
+			return number;
+		numbers.put(continent, continents.size());
+		continents.add(continent);
+		return continents.size() - 1;
+	}
+
+	/**
+	 * @param ordinal The competitor's ordinal in the index.
+	 * @return The number of their country, or {@link #UNKNOWN}.
+	 */
+	public int getCountry(int ordinal)
+	{
+		return countryOf[ordinal];
+	}
+
+	/**
+	 * @param ordinal The competitor's ordinal in the index.
+	 * @return The number of their continent, or {@link #UNKNOWN}.
+	 */
+	public int getContinent(int ordinal)
+	{
+		int country = countryOf[ordinal];
+		return country == UNKNOWN ? UNKNOWN : continentOf.get(country);
+	}
+
+	/**
+	 * @param country The number of a country.
+	 * @return The WCA's ID of the country, such as <code>USA</code>, or an empty {@link String} for {@link #UNKNOWN}.
+	 */
+	public String getCountryName(int country)
+	{
+		return country == UNKNOWN ? "" : countries.get(country);
+	}
+
+	/**
+	 * @param continent The number of a continent.
+	 * @return The name of the continent, such as <code>North America</code>, or an empty {@link String} for {@link #UNKNOWN}.
+	 */
+	public String getContinentName(int continent)
+	{
+		if(continent == UNKNOWN)
+			return "";
+		// the WCA's continent IDs are their names with an underscore in front, such as _North America
+		String id = continents.get(continent);
+		return id.startsWith("_") ? id.substring(1) : id;
+	}
+
+	/**
+	 * @return The amount of countries.
+	 */
+	public int countryCount()
+	{
+		return countries.size();
+	}
+
+	/**
+	 * @return The amount of continents.
+	 */
+	public int continentCount()
+	{
+		return continents.size();
+	}
+}
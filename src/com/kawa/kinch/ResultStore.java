@@ -0,0 +1,454 @@
+package com.kawa.kinch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import com.kawa.util.Util;
+
+/**
+ * This holds the raw results and the calculated KinchRanks of every competitor, stored by column: each event has one flat primitive array of
+ * results and one of scores, indexed by the competitor's position in the WCA ID list. The relative bests, the scoring and the averaging all
+ * walk these columns directly, so there is no need to transpose anything or to allocate an array per competitor.<br><br>
+ *
+ * The columns follow the same order as {@link RanksIndex}. They are either kept on the heap, or off-heap in direct {@link ByteBuffer}s
+ * for very large rosters.
+ * @author Kawa
+ */
+public abstract class ResultStore
+{
+	/**
+	 * The MBLD column, which holds points rather than a result where less is better.
+	 */
+	protected static final int MBLD = RanksIndex.EVENT_COUNT - 1;
+
+	/**
+	 * The amount of competitors.
+	 */
+	protected final int size;
+
+	protected ResultStore(int size)
+	{
+		this.size = size;
+	}
+
+	/**
+	 * Creates a store.
+	 * @param size The amount of competitors.
+	 * @param direct Flags whether to keep the columns off-heap.
+	 * @return The store.
+	 */
+	public static ResultStore allocate(int size, boolean direct)
+	{
+		return direct ? new Direct(size) : new Heap(size);
+	}
+
+	/**
+	 * @return The amount of competitors.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public abstract int getResult(int column, int competitor);
+
+	public abstract void setResult(int column, int competitor, int result);
+
+	public abstract double getScore(int column, int competitor);
+
+	public abstract void setScore(int column, int competitor, double score);
+
+	/**
+	 * @param competitor The competitor.
+	 * @return The average KinchRank, once {@link #average()} has been called.
+	 */
+	public abstract double getKinch(int competitor);
+
+	public abstract void setKinch(int competitor, double kinch);
+
+	/**
+	 * Finds the lowest result in a column, ignoring the competitors without one.
+	 * @param column The event column.
+	 * @return The lowest result, or {@link Integer#MAX_VALUE} if nobody has one.
+	 */
+	public abstract int findLowest(int column);
+
+	/**
+	 * Finds the highest score in a column, ignoring the competitors without one.
+	 * @param column The event column.
+	 * @return The highest score.
+	 */
+	public abstract double findBest(int column);
+
+	/**
+	 * Fills a score column with the KinchRanks of its results, as done by {@link com.kawa.util.Util#calculateKinch(int, int)}.
+	 * @param column The event column.
+	 * @param best The result the KinchRanks are calculated against.
+	 */
+	public abstract void score(int column, int best);
+
+	/**
+	 * Rescales a score column that holds points (where more is better) into KinchRanks.
+	 * @param column The event column.
+	 * @param best The points the KinchRanks are calculated against.
+	 */
+	public abstract void scale(int column, double best);
+
+	/**
+	 * Calculates the average KinchRank of every competitor across all the score columns.
+	 */
+	public abstract void average();
+
+	/**
+	 * Calculates every KinchRank and every average KinchRank in one pass over each column. This gives exactly the same KinchRanks as
+	 * {@link #score(int, int)} on each column, parsing the MBLD results into points with {@link Util#parseMBLD(int)} and
+	 * {@link #scale(int, double)} on the MBLD column, and then {@link #average()}. However, the MBLD results are parsed as the totals are
+	 * cleared, and each competitor's total is added up as their KinchRanks are calculated, rather than in more passes over every column.
+	 * Nothing is allocated.<br><br>
+	 *
+	 * A missing result is masked out arithmetically rather than with a branch: results are whole numbers, so {@code min(|result|, 1)} is 1
+	 * for a result and 0 for a missing one. A missing result is divided into as if it were 1, and its KinchRank is then multiplied by 0.
+	 * Every KinchRank that exists is multiplied by exactly 1, so nothing is rounded differently. This keeps the inner loops free of
+	 * branches, and working in {@code double}s only, which suits SIMD instructions.
+	 * @param best The result each column is calculated against, other than the MBLD column.
+	 * @param relative Flags whether the MBLD column is calculated against the most MBLD points in the store, rather than {@code mbldRecord}.
+	 * @param mbldRecord The MBLD result the MBLD column is calculated against, if not relative.
+	 * @return The MBLD points the MBLD column was calculated against.
+	 */
+	public abstract double kinch(int[] best, boolean relative, int mbldRecord);
+
+	/**
+	 * Calculates the average KinchRank of one competitor, adding up their scores in the same order as {@link #average()}.
+	 * @param competitor The competitor.
+	 */
+	public void average(int competitor)
+	{
+		double sum = 0.0;
+		for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+			sum += getScore(column, competitor);
+		setKinch(competitor, sum / RanksIndex.EVENT_COUNT);
+	}
+
+	/**
+	 * The columns are plain Java arrays.
+	 */
+	private static class Heap extends ResultStore
+	{
+		private final int[][] results;
+		private final double[][] scores;
+		private final double[] kinch;
+
+		Heap(int size)
+		{
+			super(size);
+			results = new int[RanksIndex.EVENT_COUNT][size];
+			scores = new double[RanksIndex.EVENT_COUNT][size];
+			kinch = new double[size];
+		}
+
+		@Override
+		public int getResult(int column, int competitor)
+		{
+			return results[column][competitor];
+		}
+
+		@Override
+		public void setResult(int column, int competitor, int result)
+		{
+			results[column][competitor] = result;
+		}
+
+		@Override
+		public double getScore(int column, int competitor)
+		{
+			return scores[column][competitor];
+		}
+
+		@Override
+		public void setScore(int column, int competitor, double score)
+		{
+			scores[column][competitor] = score;
+		}
+
+		@Override
+		public double getKinch(int competitor)
+		{
+			return kinch[competitor];
+		}
+
+		@Override
+		public void setKinch(int competitor, double value)
+		{
+			kinch[competitor] = value;
+		}
+
+		@Override
+		public int findLowest(int column)
+		{
+			int[] col = results[column];
+			int comparison = Integer.MAX_VALUE;
+			for(int i = 0; i < size; i++)
+			{
+				if(col[i] != 0)
+					comparison = Math.min(comparison, col[i]);
+			}
+			return comparison;
+		}
+
+		@Override
+		public double findBest(int column)
+		{
+			double[] col = scores[column];
+			double comparison = Double.MIN_VALUE;
+			for(int i = 0; i < size; i++)
+			{
+				if(col[i] != 0)
+					comparison = Math.max(comparison, col[i]);
+			}
+			return comparison;
+		}
+
+		@Override
+		public void score(int column, int best)
+		{
+			int[] in = results[column];
+			double[] out = scores[column];
+			for(int i = 0; i < size; i++)
+			{
+				out[i] = in[i] == 0 ? 0.0 : (((double) best) / ((double) in[i])) * 100.0;
+			}
+		}
+
+		@Override
+		public void scale(int column, double best)
+		{
+			double[] col = scores[column];
+			for(int i = 0; i < size; i++)
+			{
+				col[i] = (col[i] / best) * 100.0;
+			}
+		}
+
+		@Override
+		public double kinch(int[] best, boolean relative, int mbldRecord)
+		{
+			double[] sum = kinch;
+			int[] mbld = results[MBLD];
+			double[] points = scores[MBLD];
+			double most = Double.MIN_VALUE;
+			for(int i = 0; i < size; i++)
+			{
+				double parsed = Util.parseMBLD(mbld[i]);
+				points[i] = parsed;
+				most = Math.max(most, parsed);
+				sum[i] = 0.0;
+			}
+			double mbldBest = relative ? most : Util.parseMBLD(mbldRecord);
+
+			for(int column = 0; column < MBLD; column++)
+			{
+				int[] in = results[column];
+				double[] out = scores[column];
+				double comparison = best[column];
+				for(int i = 0; i < size; i++)
+				{
+					double result = in[i];
+					double present = Math.min(Math.abs(result), 1.0);
+					double score = ((comparison / (result + (1.0 - present))) * 100.0) * present;
+					out[i] = score;
+					sum[i] += score;
+				}
+			}
+
+			for(int i = 0; i < size; i++)
+			{
+				double score = (points[i] / mbldBest) * 100.0;
+				points[i] = score;
+				sum[i] = (sum[i] + score) / RanksIndex.EVENT_COUNT;
+			}
+			return mbldBest;
+		}
+
+		@Override
+		public void average()
+		{
+			for(int i = 0; i < size; i++)
+				kinch[i] = 0.0;
+
+			for(double[] col : scores)
+			{
+				for(int i = 0; i < size; i++)
+					kinch[i] += col[i];
+			}
+
+			for(int i = 0; i < size; i++)
+				kinch[i] /= RanksIndex.EVENT_COUNT;
+		}
+	}
+
+	/**
+	 * The columns live off-heap in direct {@link ByteBuffer}s, in the platform's native byte order.
+	 */
+	private static class Direct extends ResultStore
+	{
+		private final IntBuffer[] results;
+		private final DoubleBuffer[] scores;
+		private final DoubleBuffer kinch;
+
+		Direct(int size)
+		{
+			super(size);
+			results = new IntBuffer[RanksIndex.EVENT_COUNT];
+			scores = new DoubleBuffer[RanksIndex.EVENT_COUNT];
+			for(int i = 0; i < RanksIndex.EVENT_COUNT; i++)
+			{
+				results[i] = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+				scores[i] = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+			}
+			kinch = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		}
+
+		@Override
+		public int getResult(int column, int competitor)
+		{
+			return results[column].get(competitor);
+		}
+
+		@Override
+		public void setResult(int column, int competitor, int result)
+		{
+			results[column].put(competitor, result);
+		}
+
+		@Override
+		public double getScore(int column, int competitor)
+		{
+			return scores[column].get(competitor);
+		}
+
+		@Override
+		public void setScore(int column, int competitor, double score)
+		{
+			scores[column].put(competitor, score);
+		}
+
+		@Override
+		public double getKinch(int competitor)
+		{
+			return kinch.get(competitor);
+		}
+
+		@Override
+		public void setKinch(int competitor, double value)
+		{
+			kinch.put(competitor, value);
+		}
+
+		@Override
+		public int findLowest(int column)
+		{
+			IntBuffer col = results[column];
+			int comparison = Integer.MAX_VALUE;
+			for(int i = 0; i < size; i++)
+			{
+				int result = col.get(i);
+				if(result != 0)
+					comparison = Math.min(comparison, result);
+			}
+			return comparison;
+		}
+
+		@Override
+		public double findBest(int column)
+		{
+			DoubleBuffer col = scores[column];
+			double comparison = Double.MIN_VALUE;
+			for(int i = 0; i < size; i++)
+			{
+				double score = col.get(i);
+				if(score != 0)
+					comparison = Math.max(comparison, score);
+			}
+			return comparison;
+		}
+
+		@Override
+		public void score(int column, int best)
+		{
+			IntBuffer in = results[column];
+			DoubleBuffer out = scores[column];
+			for(int i = 0; i < size; i++)
+			{
+				int result = in.get(i);
+				out.put(i, result == 0 ? 0.0 : (((double) best) / ((double) result)) * 100.0);
+			}
+		}
+
+		@Override
+		public void scale(int column, double best)
+		{
+			DoubleBuffer col = scores[column];
+			for(int i = 0; i < size; i++)
+			{
+				col.put(i, (col.get(i) / best) * 100.0);
+			}
+		}
+
+		@Override
+		public double kinch(int[] best, boolean relative, int mbldRecord)
+		{
+			IntBuffer mbld = results[MBLD];
+			DoubleBuffer points = scores[MBLD];
+			double most = Double.MIN_VALUE;
+			for(int i = 0; i < size; i++)
+			{
+				double parsed = Util.parseMBLD(mbld.get(i));
+				points.put(i, parsed);
+				most = Math.max(most, parsed);
+				kinch.put(i, 0.0);
+			}
+			double mbldBest = relative ? most : Util.parseMBLD(mbldRecord);
+
+			for(int column = 0; column < MBLD; column++)
+			{
+				IntBuffer in = results[column];
+				DoubleBuffer out = scores[column];
+				double comparison = best[column];
+				for(int i = 0; i < size; i++)
+				{
+					double result = in.get(i);
+					double present = Math.min(Math.abs(result), 1.0);
+					double score = ((comparison / (result + (1.0 - present))) * 100.0) * present;
+					out.put(i, score);
+					kinch.put(i, kinch.get(i) + score);
+				}
+			}
+
+			for(int i = 0; i < size; i++)
+			{
+				double score = (points.get(i) / mbldBest) * 100.0;
+				points.put(i, score);
+				kinch.put(i, (kinch.get(i) + score) / RanksIndex.EVENT_COUNT);
+			}
+			return mbldBest;
+		}
+
+		@Override
+		public void average()
+		{
+			for(int i = 0; i < size; i++)
+				kinch.put(i, 0.0);
+
+			for(DoubleBuffer col : scores)
+			{
+				for(int i = 0; i < size; i++)
+					kinch.put(i, kinch.get(i) + col.get(i));
+			}
+
+			for(int i = 0; i < size; i++)
+				kinch.put(i, kinch.get(i) / RanksIndex.EVENT_COUNT);
+		}
+	}
+}
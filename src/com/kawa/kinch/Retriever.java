@@ -2,12 +2,14 @@ package com.kawa.kinch;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-
-import javax.swing.JProgressBar;
+import java.util.function.Predicate;
 
 import com.kawa.util.Download;
+import com.kawa.util.ProgressListener;
+import com.kawa.util.RangedDownload;
 import com.kawa.util.Util;
 
 /**
@@ -18,6 +20,7 @@ public class Retriever {
 	
 	private static URL databaseUrl;
 	private static File databaseFile = new File("." + File.separator + "WCA_export.tsv.zip");
+	private static int segments = 1;
 	
 	static {
 		try {
@@ -28,15 +31,123 @@ public class Retriever {
 	}
 	
 	/**
-	 * Downloads the database.
+	 * Downloads the database and extracts it.
+	 * @param listener Receives the progress of the download.
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 */
+	public static void retrieveDatabase(ProgressListener listener) throws MalformedURLException, IOException
+	{
+		retrieveDatabase(listener, true);
+	}
+	
+	/**
+	 * Downloads the database, unless the copy downloaded last time is still the latest one, in which case it is reused along with
+	 * anything already extracted from it.
+	 * @param listener Receives the progress of the download.
+	 * @param extract Flags whether to extract the database into the exports folder. If not, it can be read straight out of the .zip file
+	 * with {@link Parser#loadIndexFromArchive(File, String[], int)}.
+	 * @return {@code true} if a new database was downloaded, or {@code false} if the copy downloaded last time was kept.
 	 * @throws MalformedURLException
 	 * @throws IOException
 	 */
-	public static void retrieveDatabase(JProgressBar b) throws MalformedURLException, IOException
+	public static boolean retrieveDatabase(ProgressListener listener, boolean extract) throws MalformedURLException, IOException
 	{
-		Download databaseDownload = new Download(databaseUrl, databaseFile, b);
-		databaseDownload.downloadFile();
+		boolean downloaded;
+		if(segments > 1)
+			downloaded = new RangedDownload(databaseUrl, databaseFile, listener, segments).downloadFileIfModified();
+		else
+			downloaded = new Download(databaseUrl, databaseFile, listener).downloadFileIfModified();
+		
+		if(!downloaded)
+			System.out.println(">> The database hasn't changed since the last download, using the cached copy");
 		
-		Util.unzipFile(databaseDownload.getFile(), "exports");
+		if(extract)
+			extractDatabase(databaseFile);
+		return downloaded;
+	}
+	
+	/**
+	 * Downloads the database like {@link #retrieveDatabase(ProgressListener, boolean)}, and also writes it to a stream as it comes in, so
+	 * that it can be read before the download is finished (see {@link Pipeline}). It's always downloaded as a single stream, since the ranges
+	 * of a {@link RangedDownload} don't come in order, and nothing is extracted.
+	 * @param listener Receives the progress of the download.
+	 * @param tee The stream, which nothing is written to if the copy downloaded last time is kept. It isn't closed.
+	 * @return {@code true} if a new database was downloaded, or {@code false} if the copy downloaded last time was kept.
+	 * @throws IOException
+	 */
+	public static boolean streamDatabase(ProgressListener listener, OutputStream tee) throws IOException
+	{
+		Download download = new Download(databaseUrl, databaseFile, listener);
+		download.setTee(tee);
+		boolean downloaded = download.downloadFileIfModified();
+		if(!downloaded)
+			System.out.println(">> The database hasn't changed since the last download, using the cached copy");
+		return downloaded;
+	}
+	
+	/**
+	 * Extracts the parts of the database that are used into the exports folder, skipping the ones that are already there.
+	 * @param archive The database .zip file.
+	 * @throws IOException
+	 */
+	private static void extractDatabase(File archive) throws IOException
+	{
+		extractEntries(archive, Parser.ENTRY_AVERAGE, Parser.ENTRY_SINGLE);
+	}
+	
+	/**
+	 * Extracts some entries of the downloaded database into the exports folder, skipping the ones that are already there. The ranks files
+	 * are extracted by {@link #retrieveDatabase(ProgressListener, boolean)}, so this is only needed for the other files, such as
+	 * {@link Parser#ENTRY_PERSONS}.
+	 * @param names The names of the entries.
+	 * @throws IOException
+	 */
+	public static void extractEntries(String... names) throws IOException
+	{
+		extractEntries(databaseFile, names);
+	}
+	
+	private static void extractEntries(File archive, final String... names) throws IOException
+	{
+		Util.unzipFile(archive, new File("." + File.separator + "exports"), new Predicate<String>() {
+			@Override
+			public boolean test(String name)
+			{
+				for(String entry : names)
+				{
+					if(name.equals(entry))
+						return true;
+				}
+				return false;
+			}
+		}, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @return The location of the downloaded database .zip file.
+	 */
+	public static File getDatabaseFile()
+	{
+		return databaseFile;
+	}
+	
+	/**
+	 * Changes where the database is downloaded from, such as a local server for testing.
+	 * @param url The URL of the database .zip file.
+	 */
+	public static void setDatabaseUrl(URL url)
+	{
+		databaseUrl = url;
+	}
+	
+	/**
+	 * Sets how many byte ranges of the database are downloaded at the same time. With more than one, an interrupted download resumes
+	 * from where it stopped (see {@link RangedDownload}).
+	 * @param count The amount of ranges. 1 downloads it as a single stream.
+	 */
+	public static void setSegments(int count)
+	{
+		segments = count;
 	}
 }
@@ -0,0 +1,549 @@
+package com.kawa.kinch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import com.kawa.util.Metrics;
+import com.kawa.util.ProgressListener;
+import com.kawa.util.Util;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Keeps an index of the WCA database in memory and answers KinchRanks queries over HTTP, in JSON. The queries are:<br><br>
+ *
+ * <code>GET /kinch?ids=2009ZEMD01,2007VALK01&amp;relative=true</code> ranks a list of WCA IDs, from either the best results among them or the WRs.<br>
+ * <code>GET /person?id=2009ZEMD01</code> gives one competitor's results, world rankings and KinchRanks for each event, against the WRs.<br>
+ * <code>GET /top?n=100</code> gives the top competitors in the world, against the WRs.<br>
+ * <code>GET /status</code> gives the size of the index and when it was loaded.<br>
+ * <code>GET /metrics</code> gives the run report of the last load of the database, such as how long each stage took (see {@link Metrics}).<br>
+ * <code>POST /reload</code> checks for a newer WCA database, and loads it if there is one.<br><br>
+ *
+ * Every query is ranked by a {@link Main} on the index, the same as a run from the command line. A newer database is indexed while the old
+ * one keeps answering queries, and is then swapped in at once, so queries never wait for it.
+ * @author Kawa
+ */
+public class Server
+{
+	/**
+	 * The pattern a WCA ID must match, the same as in {@link Parser#readFromFile(java.io.File)}.
+	 */
+	private static final Pattern WCA_ID = Pattern.compile("\\d\\d\\d\\d[a-zA-Z][a-zA-Z][a-zA-Z][a-zA-Z]\\d\\d");
+
+	/**
+	 * The most WCA IDs a single query can rank.
+	 */
+	private static final int MAX_IDS = 10000;
+
+	/**
+	 * The header of each event's KinchRanks, in column order.
+	 */
+	private static final String[] EVENTS = new String[RanksIndex.EVENT_COUNT];
+
+	static
+	{
+		System.arraycopy(Main.EVENTS_AVERAGE, 0, EVENTS, 0, Main.EVENTS_AVERAGE.length);
+		System.arraycopy(Main.EVENTS_BESTOF, 0, EVENTS, Main.EVENTS_AVERAGE.length, Main.EVENTS_BESTOF.length);
+	}
+
+	/**
+	 * The database that is answering queries.
+	 */
+	private final AtomicReference<Database> current = new AtomicReference<Database>();
+
+	/**
+	 * Flags whether the last {@link #refresh()} finished, which is what {@code /metrics} reports. It is {@code false} while one is going on
+	 * and after one that failed.
+	 */
+	private volatile boolean refreshed;
+
+	private int port;
+	private int parallelism = 1;
+	private boolean fromArchive;
+	private boolean snapshot = true;
+	private long refreshMinutes;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private ScheduledExecutorService refresher;
+
+	/**
+	 * An index of the WCA database, along with everyone in it ranked against the WRs.
+	 */
+	private static class Database
+	{
+		final RanksIndex index;
+		final String[] wcaIds;
+		final ResultStore world;
+
+		/**
+		 * The positions in {@code world}, from the highest average KinchRank to the lowest.
+		 */
+		final int[] order;
+
+		final long loaded = System.currentTimeMillis();
+
+		Database(RanksIndex index) throws IOException
+		{
+			this.index = index;
+			wcaIds = new String[index.size()];
+			for(int i = 0; i < wcaIds.length; i++)
+				wcaIds[i] = WcaId.unpack(index.getId(i));
+
+			Main main = new Main(wcaIds, false);
+			main.calculate(index);
+			world = main.getResults();
+			order = sort(world);
+		}
+	}
+
+	/**
+	 * @param port The port to listen on.
+	 */
+	public Server(int port)
+	{
+		this.port = port;
+	}
+
+	/**
+	 * Downloads and indexes the WCA database, and starts answering queries.
+	 * @throws IOException
+	 */
+	public void start() throws IOException
+	{
+		System.out.println("> Loading the database");
+		refresh();
+
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/kinch", new Handler() {
+			@Override
+			String get(Map<String, String> query, Database database) throws IOException
+			{
+				return kinch(query, database);
+			}
+		});
+		server.createContext("/person", new Handler() {
+			@Override
+			String get(Map<String, String> query, Database database)
+			{
+				return person(query, database);
+			}
+		});
+		server.createContext("/top", new Handler() {
+			@Override
+			String get(Map<String, String> query, Database database)
+			{
+				return top(query, database);
+			}
+		});
+		server.createContext("/status", new Handler() {
+			@Override
+			String get(Map<String, String> query, Database database)
+			{
+				return "{\"competitors\":" + database.wcaIds.length + ",\"loaded\":" + database.loaded + "}";
+			}
+		});
+		server.createContext("/metrics", new Handler() {
+			@Override
+			String get(Map<String, String> query, Database database)
+			{
+				return Metrics.get().toJson(refreshed);
+			}
+		});
+		server.createContext("/reload", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				if(!exchange.getRequestMethod().equals("POST"))
+				{
+					respond(exchange, 405, error("Use POST to reload"));
+					return;
+				}
+				try
+				{
+					respond(exchange, 200, "{\"reloaded\":" + refresh() + "}");
+				}
+				catch(IOException e)
+				{
+					respond(exchange, 500, error("Couldn't reload the database: " + e.getMessage()));
+				}
+			}
+		});
+
+		executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		server.setExecutor(executor);
+		server.start();
+
+		if(refreshMinutes > 0)
+		{
+			refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "database-refresh");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			refresher.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run()
+				{
+					try
+					{
+						refresh();
+					}
+					catch(IOException e)
+					{
+						System.out.println(">> Couldn't refresh the database: " + e);
+					}
+				}
+			}, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+		}
+
+		System.out.println("> Listening on port " + server.getAddress().getPort());
+	}
+
+	/**
+	 * Stops answering queries.
+	 */
+	public void stop()
+	{
+		if(refresher != null)
+			refresher.shutdownNow();
+		if(server != null)
+			server.stop(0);
+		if(executor != null)
+			executor.shutdown();
+	}
+
+	/**
+	 * Checks for a newer WCA database, and swaps it in once it has been indexed. Queries keep being answered by the old one until then.
+	 * @return {@code true} if a newer database was loaded.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public synchronized boolean refresh() throws IOException
+	{
+		refreshed = false;
+		Metrics metrics = Metrics.get();
+		metrics.reset();
+		boolean downloaded;
+		try(Metrics.Stage stage = metrics.start("download"))
+		{
+			downloaded = Retriever.retrieveDatabase(ProgressListener.NONE, !fromArchive);
+		}
+		if(!downloaded && current.get() != null)
+		{
+			refreshed = true;
+			return false;
+		}
+
+		long start = System.nanoTime();
+		RanksIndex index;
+		try(Metrics.Stage stage = metrics.start("index"))
+		{
+			index = Parser.loadDatabase(null, parallelism, fromArchive, snapshot);
+		}
+		Database database;
+		try(Metrics.Stage stage = metrics.start("score"))
+		{
+			database = new Database(index);
+		}
+		current.set(database);
+		refreshed = true;
+		System.out.println(">> Loaded " + database.wcaIds.length + " competitors in " + (System.nanoTime() - start) / 1000000 + " ms");
+		return true;
+	}
+
+	/**
+	 * Answers a GET query with JSON.
+	 */
+	private abstract class Handler implements HttpHandler
+	{
+		abstract String get(Map<String, String> query, Database database) throws IOException;
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			if(!exchange.getRequestMethod().equals("GET"))
+			{
+				respond(exchange, 405, error("Use GET"));
+				return;
+			}
+			try
+			{
+				respond(exchange, 200, get(parseQuery(exchange.getRequestURI().getRawQuery()), current.get()));
+			}
+			catch(NotFoundException e)
+			{
+				respond(exchange, 404, error(e.getMessage()));
+			}
+			catch(IllegalArgumentException e)
+			{
+				respond(exchange, 400, error(e.getMessage()));
+			}
+			catch(IOException | RuntimeException e)
+			{
+				respond(exchange, 500, error(e.toString()));
+			}
+		}
+	}
+
+	/**
+	 * Thrown by a {@link Handler} when what was asked for doesn't exist, which is answered with a 404.
+	 */
+	private static class NotFoundException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		NotFoundException(String message)
+		{
+			super(message);
+		}
+	}
+
+	/**
+	 * Ranks a list of WCA IDs.
+	 */
+	private String kinch(Map<String, String> query, Database database) throws IOException
+	{
+		String ids = query.get("ids");
+		if(ids == null || ids.isEmpty())
+			throw new IllegalArgumentException("ids is missing");
+
+		Set<String> unique = new LinkedHashSet<String>();
+		for(String id : ids.split(","))
+			unique.add(checkId(id));
+		if(unique.size() > MAX_IDS)
+			throw new IllegalArgumentException("At most " + MAX_IDS + " ids can be ranked at once");
+
+		boolean relative = Boolean.parseBoolean(query.get("relative"));
+		String[] wcaIds = unique.toArray(new String[unique.size()]);
+		Main main = new Main(wcaIds, relative);
+		main.calculate(database.index);
+		ResultStore results = main.getResults();
+
+		StringBuilder json = new StringBuilder(128 + wcaIds.length * 256);
+		json.append("{\"relative\":").append(relative).append(",\"competitors\":[");
+		int[] order = sort(results);
+		for(int i = 0; i < order.length; i++)
+		{
+			if(i > 0)
+				json.append(',');
+			appendCompetitor(json, wcaIds[order[i]], results, order[i]);
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * Gives one competitor's results, world rankings and KinchRanks.
+	 */
+	private String person(Map<String, String> query, Database database)
+	{
+		String id = query.get("id");
+		if(id == null)
+			throw new IllegalArgumentException("id is missing");
+		id = checkId(id);
+
+		int ordinal = database.index.ordinal(WcaId.pack(id));
+		if(ordinal < 0)
+			throw new NotFoundException(id + " isn't in the WCA database");
+		StringBuilder json = new StringBuilder(2048);
+		json.append("{\"id\":");
+		appendString(json, id);
+		json.append(",\"kinch\":");
+		appendNumber(json, database.world.getKinch(ordinal));
+		json.append(",\"events\":[");
+		for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+		{
+			if(column > 0)
+				json.append(',');
+			json.append("{\"event\":");
+			appendString(json, EVENTS[column]);
+			json.append(",\"result\":").append(database.index.get(ordinal, column));
+			json.append(",\"worldRank\":").append(database.index.getRank(ordinal, column));
+			json.append(",\"record\":").append(database.index.getBaselines().getRecord(column));
+			json.append(",\"kinch\":");
+			appendNumber(json, database.world.getScore(column, ordinal));
+			json.append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * Gives the top competitors in the world.
+	 */
+	private String top(Map<String, String> query, Database database)
+	{
+		int n;
+		try
+		{
+			n = query.containsKey("n") ? Integer.parseInt(query.get("n")) : 100;
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("n must be a number");
+		}
+		if(n < 0 || n > MAX_IDS)
+			throw new IllegalArgumentException("n must be between 0 and " + MAX_IDS);
+		n = Math.min(n, database.order.length);
+
+		StringBuilder json = new StringBuilder(64 + n * 256);
+		json.append("{\"relative\":false,\"competitors\":[");
+		for(int i = 0; i < n; i++)
+		{
+			if(i > 0)
+				json.append(',');
+			int competitor = database.order[i];
+			appendCompetitor(json, database.wcaIds[competitor], database.world, competitor);
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * Sorts the positions of a store from the highest average KinchRank to the lowest. Ties keep their order.
+	 * @param results The store.
+	 * @return The positions.
+	 */
+	private static int[] sort(ResultStore results)
+	{
+		double[] kinch = new double[results.size()];
+		for(int i = 0; i < kinch.length; i++)
+			kinch[i] = results.getKinch(i);
+		return Util.sortDescending(kinch);
+	}
+
+	private static String checkId(String id)
+	{
+		id = id.trim();
+		if(!WCA_ID.matcher(id).matches())
+			throw new IllegalArgumentException("Not a WCA ID: " + id);
+		return id.toUpperCase();
+	}
+
+	private static void appendCompetitor(StringBuilder json, String id, ResultStore results, int competitor)
+	{
+		json.append("{\"id\":");
+		appendString(json, id);
+		json.append(",\"kinch\":");
+		appendNumber(json, results.getKinch(competitor));
+		json.append(",\"events\":{");
+		for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+		{
+			if(column > 0)
+				json.append(',');
+			appendString(json, EVENTS[column]);
+			json.append(':');
+			appendNumber(json, results.getScore(column, competitor));
+		}
+		json.append("}}");
+	}
+
+	private static void appendNumber(StringBuilder json, double value)
+	{
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			json.append("null");
+		else
+			json.append(value);
+	}
+
+	private static void appendString(StringBuilder json, String value)
+	{
+		json.append('"');
+		for(int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if(c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if(c < 0x20)
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		json.append('"');
+	}
+
+	private static String error(String message)
+	{
+		StringBuilder json = new StringBuilder("{\"error\":");
+		appendString(json, message == null ? "" : message);
+		return json.append('}').toString();
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException
+	{
+		Map<String, String> parameters = new HashMap<String, String>();
+		if(query == null)
+			return parameters;
+		for(String pair : query.split("&"))
+		{
+			int equals = pair.indexOf('=');
+			if(equals < 0)
+				parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+			else
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+		}
+		return parameters;
+	}
+
+	private static void respond(HttpExchange exchange, int code, String json) throws IOException
+	{
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(code, body.length);
+		try(OutputStream out = exchange.getResponseBody())
+		{
+			out.write(body);
+		}
+	}
+
+	/**
+	 * @param parallelism The amount of threads used to read the WCA database files.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param fromArchive Flags whether to read the WCA database straight out of the downloaded .zip file, see {@link Main#setFromArchive(boolean)}.
+	 */
+	public void setFromArchive(boolean fromArchive)
+	{
+		this.fromArchive = fromArchive;
+	}
+
+	/**
+	 * @param snapshot Flags whether to use snapshots, see {@link Main#setSnapshot(boolean)}.
+	 */
+	public void setSnapshot(boolean snapshot)
+	{
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Sets how often to check for a newer WCA database, on top of <code>POST /reload</code>.
+	 * @param refreshMinutes The amount of minutes between checks, or 0 to never check.
+	 */
+	public void setRefreshMinutes(long refreshMinutes)
+	{
+		this.refreshMinutes = refreshMinutes;
+	}
+}
@@ -0,0 +1,191 @@
+package com.kawa.kinch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Saves a {@link RanksIndex} to a compact binary file, so that the next run can load it instead of reading the WCA database files again.<br><br>
+ *
+ * Each snapshot is keyed by the database it was made from (see {@link #key(File)} and {@link #key(File, File)}). A snapshot with a different
+ * key, a different version or a different list of events is ignored, so it is simply made again once a new database comes out. The file
+ * looks like this, in big-endian order:<br><br>
+ *
+ * <code>int magic, int version, string key, int eventCount, string[eventCount] events, int size</code><br>
+ * followed by each competitor as <code>long personId, int mask</code>, and a <code>int best, int worldRank</code> for each bit set in
+ * the mask. Strings are a two-byte length followed by their bytes.
+ * @author Kawa
+ */
+public class Snapshot
+{
+	/**
+	 * Where the snapshot is kept by default.
+	 */
+	public static final File DEFAULT_FILE = new File("." + File.separator + "kinch.snapshot");
+
+	private static final int MAGIC = 0x4B494E43;
+
+	/**
+	 * The version of the file layout, which should be changed whenever it changes.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Creates the key of the database inside a .zip file, from the CRCs and sizes of its Single and Average entries.
+	 * @param archive The WCA database .zip file.
+	 * @return The key.
+	 * @throws IOException
+	 */
+	public static String key(File archive) throws IOException
+	{
+		try(ZipFile zip = new ZipFile(archive))
+		{
+			ZipEntry average = Parser.getEntry(zip, Parser.ENTRY_AVERAGE);
+			ZipEntry single = Parser.getEntry(zip, Parser.ENTRY_SINGLE);
+			return "zip:" + Long.toHexString(average.getCrc()) + ":" + average.getSize() + ":" + Long.toHexString(single.getCrc()) + ":" + single.getSize();
+		}
+	}
+
+	/**
+	 * Creates the key of the extracted database files, from their sizes and dates.
+	 * @param average The Average database file.
+	 * @param single The Single database file.
+	 * @return The key.
+	 */
+	public static String key(File average, File single)
+	{
+		return "tsv:" + average.length() + ":" + average.lastModified() + ":" + single.length() + ":" + single.lastModified();
+	}
+
+	/**
+	 * Writes an index to a snapshot. It is written to a temporary file first, which then replaces the snapshot.
+	 * @param index The index.
+	 * @param key The key of the database the index was made from.
+	 * @param file The snapshot file.
+	 * @throws IOException
+	 */
+	public static void write(RanksIndex index, String key, File file) throws IOException
+	{
+		File temp = new File(file.getPath() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, key);
+			out.writeInt(RanksIndex.EVENT_COUNT);
+			for(String event : Main.EVENTS_AVERAGE)
+				writeString(out, event);
+			for(String event : Main.EVENTS_BESTOF)
+				writeString(out, event);
+
+			out.writeInt(index.size());
+			for(int ordinal = 0; ordinal < index.size(); ordinal++)
+			{
+				int mask = 0;
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				{
+					if(index.get(ordinal, column) != 0)
+						mask |= 1 << column;
+				}
+
+				out.writeLong(index.getId(ordinal));
+				out.writeInt(mask);
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				{
+					if((mask & (1 << column)) != 0)
+					{
+						out.writeInt(index.get(ordinal, column));
+						out.writeInt(index.getRank(ordinal, column));
+					}
+				}
+			}
+		}
+
+		try
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException e)
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Reads an index from a snapshot, if the snapshot is for the right database.
+	 * @param file The snapshot file.
+	 * @param key The key of the database.
+	 * @param wcaIds The WCA IDs to keep, or {@code null} to keep everyone.
+	 * @return The index, or {@code null} if there is no snapshot, or it is for a different database, an older version or cut short.
+	 * @throws IOException
+	 */
+	public static RanksIndex read(File file, String key, String[] wcaIds) throws IOException
+	{
+		if(!file.isFile())
+			return null;
+
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+		{
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION || !key.equals(readString(in)))
+				return null;
+
+			if(in.getInt() != RanksIndex.EVENT_COUNT)
+				return null;
+			for(String event : Main.EVENTS_AVERAGE)
+			{
+				if(!event.equals(readString(in)))
+					return null;
+			}
+			for(String event : Main.EVENTS_BESTOF)
+			{
+				if(!event.equals(readString(in)))
+					return null;
+			}
+
+			int size = in.getInt();
+			RanksIndex index = wcaIds == null ? new RanksIndex(size) : RanksIndex.forRoster(wcaIds);
+			for(int i = 0; i < size; i++)
+			{
+				long personId = in.getLong();
+				int mask = in.getInt();
+				for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				{
+					if((mask & (1 << column)) != 0)
+						index.result(personId, column, in.getInt(), in.getInt());
+				}
+			}
+			return index;
+		}
+		catch(BufferUnderflowException e)
+		{
+			return null;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer in)
+	{
+		byte[] bytes = new byte[in.getShort() & 0xFFFF];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,109 @@
+package com.kawa.kinch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs WCA IDs into {@code long}s so they can be stored and compared without any {@link String}s. A WCA ID is always in the form of
+ * <code>YYYYLLLLNN</code> (year, four letters of the name, number), so it is packed as one number
+ * where each digit counts in base 10 and each letter counts in base 26.<br><br>
+ *
+ * Packed IDs sort in the same order as the IDs themselves.
+ * @author Kawa
+ */
+public class WcaId
+{
+	/**
+	 * The length of a WCA ID.
+	 */
+	public static final int LENGTH = 10;
+
+	/**
+	 * Returned when something isn't a WCA ID.
+	 */
+	public static final long INVALID = -1;
+
+	/**
+	 * Packs a WCA ID.
+	 * @param wcaId The WCA ID, in either case.
+	 * @return The packed ID, or {@link #INVALID} if it isn't a WCA ID.
+	 */
+	public static long pack(String wcaId)
+	{
+		if(wcaId.length() != LENGTH)
+			return INVALID;
+
+		long packed = 0;
+		for(int i = 0; i < LENGTH; i++)
+		{
+			packed = step(packed, i, wcaId.charAt(i));
+			if(packed < 0)
+				return INVALID;
+		}
+		return packed;
+	}
+
+	/**
+	 * Packs a WCA ID straight from the bytes of a file, without decoding them.
+	 * @param buffer The bytes.
+	 * @param position Where the WCA ID starts. There must be at least {@link #LENGTH} bytes left.
+	 * @return The packed ID, or {@link #INVALID} if it isn't a WCA ID.
+	 */
+	public static long pack(ByteBuffer buffer, int position)
+	{
+		long packed = 0;
+		for(int i = 0; i < LENGTH; i++)
+		{
+			packed = step(packed, i, (char) buffer.get(position + i));
+			if(packed < 0)
+				return INVALID;
+		}
+		return packed;
+	}
+
+	/**
+	 * Packs one more character of a WCA ID.
+	 * @param packed The ID packed so far.
+	 * @param i The position of the character.
+	 * @param c The character.
+	 * @return The ID packed so far, or {@link #INVALID} if the character doesn't belong there.
+	 */
+	private static long step(long packed, int i, char c)
+	{
+		if(i < 4 || i > 7)
+		{
+			if(c < '0' || c > '9')
+				return INVALID;
+			return packed * 10 + (c - '0');
+		}
+
+		if(c >= 'a' && c <= 'z')
+			c -= 'a' - 'A';
+		if(c < 'A' || c > 'Z')
+			return INVALID;
+		return packed * 26 + (c - 'A');
+	}
+
+	/**
+	 * Unpacks a WCA ID.
+	 * @param packed The packed ID.
+	 * @return The WCA ID, in upper case.
+	 */
+	public static String unpack(long packed)
+	{
+		char[] out = new char[LENGTH];
+		for(int i = LENGTH - 1; i >= 0; i--)
+		{
+			if(i < 4 || i > 7)
+			{
+				out[i] = (char) ('0' + packed % 10);
+				packed /= 10;
+			}
+			else
+			{
+				out[i] = (char) ('A' + packed % 26);
+				packed /= 26;
+			}
+		}
+		return new String(out);
+	}
+}
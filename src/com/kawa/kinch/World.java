@@ -0,0 +1,386 @@
+package com.kawa.kinch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.kawa.util.ConsoleProgress;
+import com.kawa.util.CsvStreamWriter;
+import com.kawa.util.Metrics;
+import com.kawa.util.MultiSink;
+import com.kawa.util.RowSink;
+import com.kawa.util.Util;
+
+/**
+ * Calculates the KinchRanks of every competitor in the WCA database, against the WRs, along with their world, continent and country
+ * positions. Nobody has to be listed: everyone with a result in the ranks files is ranked.<br><br>
+ *
+ * Since KinchRanks against the WRs don't depend on anyone else's results, everyone is split into slices, and each slice is ranked by its
+ * own {@link Main} on its own thread. The slices are then put back together, sorted, and written to a .CSV file (and any other outputs,
+ * see {@link Main#addOutput(File)}) with the columns:<br><br>
+ *
+ * <code>Person, KinchRank, WorldPosition, Continent, ContinentPosition, Country, CountryPosition</code>, followed by the KinchRanks of
+ * each event.<br><br>
+ *
+ * Competitors with the same average KinchRank share a position, and the next position is skipped (1, 2, 2, 4).
+ * @author Kawa
+ */
+public class World implements Runnable
+{
+	/**
+	 * The smallest amount of competitors that is worth giving its own slice.
+	 */
+	private static final int MIN_SLICE = 4096;
+
+	private static final String[] HEADER = {"Person", "KinchRank", "WorldPosition", "Continent", "ContinentPosition", "Country", "CountryPosition", "222", "333", "444", "555", "666", "777", "333oh", "333ft", "333fm", "minx", "pyram", "sq1", "clock", "skewb", "333bf", "444bf", "555bf", "333mbf"};
+
+	private File outputFile;
+	private boolean clean;
+	private int parallelism = 1;
+	private boolean offHeap;
+	private boolean fromArchive;
+	private boolean snapshot = true;
+	private int decimals = CsvStreamWriter.DEFAULT_DECIMALS;
+	private List<File> extraOutputs = new ArrayList<File>();
+	private Exception failure;
+
+	/**
+	 * @param outputFile The output CSV file.
+	 * @param clean Flags whether or not to delete the previously downloaded database files.
+	 */
+	public World(File outputFile, boolean clean)
+	{
+		this.outputFile = outputFile;
+		this.clean = clean;
+	}
+
+	@SuppressWarnings("try")
+	private void start() throws Exception
+	{
+		Metrics metrics = Metrics.get();
+		metrics.reset();
+		boolean completed = false;
+		try
+		{
+			System.out.println("> Cleaning");
+			try(Metrics.Stage stage = metrics.start("clean"))
+			{
+				Util.clean(false, true);
+			}
+			System.out.println("> Downloading database");
+			try(Metrics.Stage stage = metrics.start("download"))
+			{
+				Retriever.retrieveDatabase(new ConsoleProgress(), !fromArchive);
+			}
+
+			long start = System.nanoTime();
+			System.out.println("> Indexing the database");
+			RanksIndex index;
+			try(Metrics.Stage stage = metrics.start("index"))
+			{
+				index = Parser.loadDatabase(null, parallelism, fromArchive, snapshot);
+			}
+			System.out.println(">> Indexed " + index.size() + " competitors in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+			start = System.nanoTime();
+			System.out.println("> Finding everyone's country");
+			Regions regions;
+			try(Metrics.Stage stage = metrics.start("regions"))
+			{
+				if(fromArchive)
+					regions = Regions.loadFromArchive(index, Retriever.getDatabaseFile());
+				else
+				{
+					Retriever.extractEntries(Parser.ENTRY_PERSONS, Parser.ENTRY_COUNTRIES);
+					regions = Regions.load(index, Parser.DB_PERSONS, Parser.DB_COUNTRIES);
+				}
+			}
+			System.out.println(">> Found " + regions.countryCount() + " countries in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+			rank(index, regions);
+
+			if(clean)
+			{
+				System.out.println("> Cleaning up");
+				Util.clean(false);
+			}
+			completed = true;
+		}
+		finally
+		{
+			Main.writeReport(outputFile, completed);
+		}
+
+		System.out.println("> Done!");
+	}
+
+	/**
+	 * Ranks everyone in an index and writes them to the output file.
+	 * @param index The index of the WCA database, which should keep everyone.
+	 * @param regions The regions of everyone in the index.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public void rank(RanksIndex index, Regions regions) throws IOException
+	{
+		long start = System.nanoTime();
+		System.out.println("> Calculating the KinchRanks of " + index.size() + " competitors");
+		ResultStore[] slices;
+		try(Metrics.Stage stage = Metrics.get().start("score"))
+		{
+			slices = calculate(index);
+		}
+		System.out.println(">> Calculated in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		start = System.nanoTime();
+		System.out.println("> Writing to file");
+		try(Metrics.Stage stage = Metrics.get().start("write"))
+		{
+			write(index, regions, slices);
+		}
+		System.out.println(">> Written in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	/**
+	 * Calculates the KinchRanks of everyone in an index, a slice at a time on several threads.
+	 * @param index The index.
+	 * @return The KinchRanks of each slice. Slice {@code i} holds the competitors from ordinal {@code i * slice size}.
+	 * @throws IOException
+	 */
+	private ResultStore[] calculate(final RanksIndex index) throws IOException
+	{
+		int size = index.size();
+		int count = Math.max(1, Math.min(parallelism * 4, size / MIN_SLICE));
+		final int sliceSize = (size + count - 1) / Math.max(1, count);
+
+		List<Callable<ResultStore>> tasks = new ArrayList<Callable<ResultStore>>();
+		for(int from = 0; from < size; from += sliceSize)
+		{
+			final String[] wcaIds = new String[Math.min(sliceSize, size - from)];
+			for(int i = 0; i < wcaIds.length; i++)
+				wcaIds[i] = WcaId.unpack(index.getId(from + i));
+
+			tasks.add(new Callable<ResultStore>() {
+				@Override
+				public ResultStore call() throws IOException
+				{
+					Main main = new Main(wcaIds, false);
+					main.setOffHeap(offHeap);
+					main.calculate(index);
+					return main.getResults();
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+		try
+		{
+			List<Future<ResultStore>> futures = executor.invokeAll(tasks);
+			ResultStore[] slices = new ResultStore[futures.size()];
+			for(int i = 0; i < slices.length; i++)
+				slices[i] = futures.get(i).get();
+			return slices;
+		}
+		catch(InterruptedException e)
+		{
+			throw new IOException("Interrupted while calculating the KinchRanks", e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Error calculating the KinchRanks", e.getCause());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Sorts everyone by their average KinchRank, finds their positions and writes them to the output file, and any other outputs.
+	 * @param index The index.
+	 * @param regions The regions of everyone in the index.
+	 * @param slices The KinchRanks of each slice.
+	 * @throws IOException
+	 */
+	private void write(RanksIndex index, Regions regions, ResultStore[] slices) throws IOException
+	{
+		List<File> files = new ArrayList<File>();
+		files.add(outputFile);
+		files.addAll(extraOutputs);
+		try(RowSink sink = MultiSink.open(files, decimals))
+		{
+			write(index, regions, slices, sink);
+		}
+	}
+
+	private void write(RanksIndex index, Regions regions, ResultStore[] slices, RowSink sink) throws IOException
+	{
+		int size = index.size();
+		int sliceSize = slices.length == 0 ? 1 : slices[0].size();
+		double[] kinch = new double[size];
+		for(int i = 0; i < size; i++)
+			kinch[i] = slices[i / sliceSize].getKinch(i % sliceSize);
+		int[] order = Util.sortDescending(kinch);
+
+		Positions world = new Positions(1);
+		Positions continents = new Positions(regions.continentCount());
+		Positions countries = new Positions(regions.countryCount());
+
+		RowSink.Type[] types = new RowSink.Type[HEADER.length];
+		Arrays.fill(types, RowSink.Type.DECIMAL);
+		types[0] = RowSink.Type.TEXT;
+		types[2] = RowSink.Type.INTEGER;
+		types[3] = RowSink.Type.TEXT;
+		types[4] = RowSink.Type.INTEGER;
+		types[5] = RowSink.Type.TEXT;
+		types[6] = RowSink.Type.INTEGER;
+		sink.writeHeader(HEADER, types);
+		for(int ordinal : order)
+		{
+			int country = regions.getCountry(ordinal);
+			int continent = regions.getContinent(ordinal);
+			ResultStore slice = slices[ordinal / sliceSize];
+			int competitor = ordinal % sliceSize;
+
+			sink.writeField(WcaId.unpack(index.getId(ordinal)));
+			sink.writeField(kinch[ordinal]);
+			sink.writeField(world.next(0, kinch[ordinal]));
+			if(continent == Regions.UNKNOWN)
+			{
+				sink.writeEmpty();
+				sink.writeEmpty();
+			}
+			else
+			{
+				sink.writeField(regions.getContinentName(continent));
+				sink.writeField(continents.next(continent, kinch[ordinal]));
+			}
+			if(country == Regions.UNKNOWN)
+			{
+				sink.writeEmpty();
+				sink.writeEmpty();
+			}
+			else
+			{
+				sink.writeField(regions.getCountryName(country));
+				sink.writeField(countries.next(country, kinch[ordinal]));
+			}
+			for(int column = 0; column < RanksIndex.EVENT_COUNT; column++)
+				sink.writeField(slice.getScore(column, competitor));
+			sink.endRow();
+		}
+	}
+
+	/**
+	 * Counts the positions within several groups, such as each country, as competitors are given to it from the highest average KinchRank
+	 * to the lowest.
+	 */
+	private static class Positions
+	{
+		private final int[] count;
+		private final int[] position;
+		private final double[] last;
+
+		Positions(int groups)
+		{
+			count = new int[groups];
+			position = new int[groups];
+			last = new double[groups];
+		}
+
+		/**
+		 * @param group The competitor's group.
+		 * @param kinch The competitor's average KinchRank.
+		 * @return The competitor's position in their group.
+		 */
+		int next(int group, double kinch)
+		{
+			count[group]++;
+			if(count[group] == 1 || kinch != last[group])
+				position[group] = count[group];
+			last[group] = kinch;
+			return position[group];
+		}
+	}
+
+	/**
+	 * Sets the amount of threads used to read the WCA database files, and to calculate the KinchRanks.
+	 * @param parallelism The amount of threads.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param offHeap Flags whether to keep each slice's {@link ResultStore} columns off-heap.
+	 */
+	public void setOffHeap(boolean offHeap)
+	{
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * @param fromArchive Flags whether to read the WCA database straight out of the downloaded .zip file, see {@link Main#setFromArchive(boolean)}.
+	 */
+	public void setFromArchive(boolean fromArchive)
+	{
+		this.fromArchive = fromArchive;
+	}
+
+	/**
+	 * @param snapshot Flags whether to use snapshots, see {@link Main#setSnapshot(boolean)}.
+	 */
+	public void setSnapshot(boolean snapshot)
+	{
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * @param decimals The amount of decimals the KinchRanks are written with, see {@link Main#setDecimals(int)}.
+	 */
+	public void setDecimals(int decimals)
+	{
+		this.decimals = decimals;
+	}
+
+	/**
+	 * @param file A file everyone is written to as well as the output file, see {@link Main#addOutput(File)}.
+	 */
+	public void addOutput(File file)
+	{
+		extraOutputs.add(file);
+	}
+
+	/**
+	 * @return Why the last {@link #run()} failed, or {@code null} if it didn't.
+	 */
+	public Exception getFailure()
+	{
+		return failure;
+	}
+
+	@Override
+	public void run()
+	{
+		failure = null;
+		try
+		{
+			start();
+		}
+		catch(Exception e)
+		{
+			failure = e;
+			System.out.println("> Ranking everyone failed: " + e);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.kawa.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pipe from one thread to another, which holds at most a fixed amount of bytes. The writing thread writes to {@link #getOutput()}, which
+ * gathers the bytes into chunks and hands them over through a bounded queue, and the reading thread reads them from {@link #getInput()}.
+ * When the queue is full the writer waits for the reader, and when it's empty the reader waits for the writer, so two stages of a pipeline
+ * can run at the same time without one of them getting far ahead of the other and piling up memory.<br><br>
+ *
+ * Either side can stop the other: if the writer fails it calls {@link #fail(Throwable)}, which the reader then gets as an
+ * {@link IOException}, and if the reader closes its side, the writer's next write throws an {@link IOException}.
+ * @author Kawa
+ */
+public class BlockingPipe
+{
+	/**
+	 * The size of each chunk by default.
+	 */
+	public static final int DEFAULT_CHUNK = 64 * 1024;
+
+	private static final byte[] END = new byte[0];
+	private static final long WAIT_MILLIS = 100;
+
+	private final BlockingQueue<byte[]> queue;
+	private final int chunkSize;
+	private final Output output = new Output();
+	private final Input input = new Input();
+	private volatile Throwable failure;
+	private volatile boolean readerClosed;
+
+	/**
+	 * @param chunks The amount of chunks the pipe can hold.
+	 * @param chunkSize The size of each chunk.
+	 */
+	public BlockingPipe(int chunks, int chunkSize)
+	{
+		this.queue = new ArrayBlockingQueue<byte[]>(chunks);
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @return The side of the pipe that is written to.
+	 */
+	public OutputStream getOutput()
+	{
+		return output;
+	}
+
+	/**
+	 * @return The side of the pipe that is read from.
+	 */
+	public InputStream getInput()
+	{
+		return input;
+	}
+
+	/**
+	 * Stops the pipe because the writer failed. The reader gets the failure as an {@link IOException} once it has read what was already
+	 * in the pipe.
+	 * @param cause The failure.
+	 */
+	public void fail(Throwable cause)
+	{
+		failure = cause;
+		// if the queue is full, the reader isn't waiting, and sees the failure when it gets to the end of what's there
+		queue.offer(END);
+	}
+
+	private class Output extends OutputStream
+	{
+		private byte[] chunk = new byte[chunkSize];
+		private int filled;
+		private boolean closed;
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if(filled == chunk.length)
+				hand(chunk);
+			chunk[filled++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			while(len > 0)
+			{
+				if(filled == chunk.length)
+					hand(chunk);
+				int count = Math.min(len, chunk.length - filled);
+				System.arraycopy(b, off, chunk, filled, count);
+				filled += count;
+				off += count;
+				len -= count;
+			}
+		}
+
+		/**
+		 * Hands what has been written so far to the reader.
+		 */
+		@Override
+		public void flush() throws IOException
+		{
+			if(filled > 0)
+				hand(Arrays.copyOf(chunk, filled));
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if(closed)
+				return;
+			closed = true;
+			flush();
+			put(END);
+		}
+
+		private void hand(byte[] full) throws IOException
+		{
+			put(full);
+			if(full == chunk)
+				chunk = new byte[chunkSize];
+			filled = 0;
+		}
+
+		private void put(byte[] bytes) throws IOException
+		{
+			try
+			{
+				// the reader may close its side as soon as it has taken the end, so handing over the end after that is fine
+				while(bytes != END && readerClosed || !queue.offer(bytes, WAIT_MILLIS, TimeUnit.MILLISECONDS))
+				{
+					if(readerClosed)
+					{
+						queue.clear();
+						throw new IOException("The pipe was closed by its reader");
+					}
+				}
+			}
+			catch(InterruptedException e)
+			{
+				throw new InterruptedIOException("Interrupted while writing to a pipe");
+			}
+		}
+	}
+
+	private class Input extends InputStream
+	{
+		private byte[] chunk = new byte[0];
+		private int position;
+		private boolean ended;
+
+		@Override
+		public int read() throws IOException
+		{
+			if(!next())
+				return -1;
+			return chunk[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if(len == 0)
+				return 0;
+			if(!next())
+				return -1;
+			int count = Math.min(len, chunk.length - position);
+			System.arraycopy(chunk, position, b, off, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public int available()
+		{
+			return chunk.length - position;
+		}
+
+		/**
+		 * Makes sure there is something left in the current chunk, waiting for the next one if needed.
+		 * @return {@code false} at the end of the pipe.
+		 */
+		private boolean next() throws IOException
+		{
+			while(position == chunk.length)
+			{
+				if(ended)
+					return false;
+				byte[] taken;
+				try
+				{
+					taken = queue.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				catch(InterruptedException e)
+				{
+					throw new InterruptedIOException("Interrupted while reading from a pipe");
+				}
+				if(taken == null)
+				{
+					// the writer may have failed while the queue was full, in which case there's no end to wait for
+					if(failure != null)
+						throw new IOException("The writer of the pipe failed", failure);
+					continue;
+				}
+				chunk = taken;
+				position = 0;
+				if(chunk == END)
+				{
+					ended = true;
+					if(failure != null)
+						throw new IOException("The writer of the pipe failed", failure);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Stops reading, so that the writer stops too.
+		 */
+		@Override
+		public void close()
+		{
+			readerClosed = true;
+			queue.clear();
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package com.kawa.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a file written by {@link ColumnarSink}, a row at a time. Only one row group is held in memory, and each is read a column at a time.
+ * <br><br>
+ *
+ * <code>
+ * try(ColumnarReader reader = new ColumnarReader(file))<br>
+ * {<br>
+ * &nbsp; int kinch = reader.findColumn("KinchRank");<br>
+ * &nbsp; while(reader.next())<br>
+ * &nbsp; &nbsp; System.out.println(reader.getText(0) + " " + reader.getDecimal(kinch));<br>
+ * }
+ * </code>
+ * @author Kawa
+ */
+public class ColumnarReader implements Closeable
+{
+	private final DataInputStream in;
+	private final double scale;
+	private final String[] names;
+	private final RowSink.Type[] types;
+
+	private String[][] texts;
+	private long[][] integers;
+	private double[][] decimals;
+	private boolean[][] empty;
+	private int capacity;
+	private int rows;
+	private int row = -1;
+	private long totalRows = -1;
+
+	/**
+	 * @param file The file.
+	 * @throws IOException If the file can't be read, or wasn't written by {@link ColumnarSink}.
+	 */
+	public ColumnarReader(File file) throws IOException
+	{
+		this(new FileInputStream(file));
+	}
+
+	/**
+	 * Reads the header of a file.
+	 * @param in The file's contents. It is closed along with this reader.
+	 * @throws IOException If the contents can't be read, or weren't written by {@link ColumnarSink}.
+	 */
+	public ColumnarReader(InputStream in) throws IOException
+	{
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		try
+		{
+			if(this.in.readInt() != ColumnarSink.MAGIC)
+				throw new IOException("Not a columnar file");
+			int version = this.in.readInt();
+			if(version != ColumnarSink.VERSION)
+				throw new IOException("Unknown columnar file version " + version);
+			scale = Math.pow(10.0, this.in.readByte());
+
+			int count = (int) readVarint();
+			names = new String[count];
+			types = new RowSink.Type[count];
+			RowSink.Type[] known = RowSink.Type.values();
+			for(int i = 0; i < count; i++)
+			{
+				names[i] = this.in.readUTF();
+				int type = this.in.readUnsignedByte();
+				if(type >= known.length)
+					throw new IOException("Column " + names[i] + " has an unknown type " + type);
+				types[i] = known[type];
+			}
+		}
+		catch(IOException e)
+		{
+			this.in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The amount of columns.
+	 */
+	public int getColumnCount()
+	{
+		return names.length;
+	}
+
+	/**
+	 * @param column The column.
+	 * @return The column's name.
+	 */
+	public String getColumnName(int column)
+	{
+		return names[column];
+	}
+
+	/**
+	 * @param column The column.
+	 * @return The column's type.
+	 */
+	public RowSink.Type getColumnType(int column)
+	{
+		return types[column];
+	}
+
+	/**
+	 * @param name The name of a column.
+	 * @return The column, or -1 if there isn't one with that name.
+	 */
+	public int findColumn(String name)
+	{
+		for(int i = 0; i < names.length; i++)
+		{
+			if(names[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves to the next row.
+	 * @return {@code false} if there are no more rows.
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException
+	{
+		if(totalRows >= 0)
+			return false;
+		if(++row < rows)
+			return true;
+
+		rows = (int) readVarint();
+		row = 0;
+		if(rows == 0)
+		{
+			totalRows = readVarint();
+			return false;
+		}
+		readRowGroup();
+		return true;
+	}
+
+	/**
+	 * @return The total amount of rows in the file, once {@link #next()} has returned {@code false}, or -1 before.
+	 */
+	public long getTotalRows()
+	{
+		return totalRows;
+	}
+
+	/**
+	 * @param column The column.
+	 * @return Whether the current row's field is empty.
+	 */
+	public boolean isEmpty(int column)
+	{
+		return empty[column][row];
+	}
+
+	/**
+	 * @param column A {@link RowSink.Type#TEXT} column.
+	 * @return The current row's field, or {@code null} if it is empty.
+	 */
+	public String getText(int column)
+	{
+		check(column, RowSink.Type.TEXT);
+		return texts[column][row];
+	}
+
+	/**
+	 * @param column An {@link RowSink.Type#INTEGER} column.
+	 * @return The current row's field, or 0 if it is empty.
+	 */
+	public long getInteger(int column)
+	{
+		check(column, RowSink.Type.INTEGER);
+		return integers[column][row];
+	}
+
+	/**
+	 * @param column A {@link RowSink.Type#DECIMAL} column.
+	 * @return The current row's field, or NaN if it is empty.
+	 */
+	public double getDecimal(int column)
+	{
+		check(column, RowSink.Type.DECIMAL);
+		return decimals[column][row];
+	}
+
+	private void check(int column, RowSink.Type type)
+	{
+		if(types[column] != type)
+			throw new IllegalStateException("Column " + names[column] + " holds " + types[column] + ", not " + type);
+		if(row < 0 || row >= rows)
+			throw new IllegalStateException("There is no current row");
+	}
+
+	private void readRowGroup() throws IOException
+	{
+		if(capacity < rows)
+		{
+			capacity = rows;
+			texts = new String[types.length][];
+			integers = new long[types.length][];
+			decimals = new double[types.length][];
+			empty = new boolean[types.length][rows];
+			for(int i = 0; i < types.length; i++)
+			{
+				if(types[i] == RowSink.Type.TEXT)
+					texts[i] = new String[rows];
+				else if(types[i] == RowSink.Type.INTEGER)
+					integers[i] = new long[rows];
+				else
+					decimals[i] = new double[rows];
+			}
+		}
+
+		byte[] bytes = new byte[64];
+		for(int i = 0; i < types.length; i++)
+		{
+			boolean[] columnEmpty = empty[i];
+			for(int from = 0; from < rows; from += 8)
+			{
+				int bits = in.readUnsignedByte();
+				for(int r = from; r < Math.min(from + 8, rows); r++)
+					columnEmpty[r] = (bits & (1 << (r - from))) != 0;
+			}
+
+			for(int r = 0; r < rows; r++)
+			{
+				switch(types[i])
+				{
+					case TEXT:
+						if(columnEmpty[r])
+						{
+							texts[i][r] = null;
+							break;
+						}
+						int length = (int) readVarint();
+						if(length > bytes.length)
+							bytes = new byte[Math.max(length, bytes.length * 2)];
+						in.readFully(bytes, 0, length);
+						texts[i][r] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+						break;
+					case INTEGER:
+						integers[i][r] = columnEmpty[r] ? 0 : unzigzag(readVarint());
+						break;
+					case DECIMAL:
+						decimals[i][r] = columnEmpty[r] ? Double.NaN : readDecimal();
+						break;
+				}
+			}
+		}
+	}
+
+	private double readDecimal() throws IOException
+	{
+		long scaled = unzigzag(readVarint());
+		if(scaled == ColumnarSink.RAW)
+			return in.readDouble();
+		return scaled / scale;
+	}
+
+	private static long unzigzag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private long readVarint() throws IOException
+	{
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
@@ -0,0 +1,276 @@
+package com.kawa.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a table as a compact, typed binary file that is stored a column at a time, and read back by {@link ColumnarReader}.<br><br>
+ *
+ * Rows are kept in memory until there is a row group of them, which is then written one column after the other, so a sink only ever holds
+ * one row group. The file looks like this, in big-endian order:<br><br>
+ *
+ * <code>int magic, int version, byte decimals, varint columnCount</code>, followed by each column as <code>UTF name, byte type</code>,<br>
+ * then each row group as <code>varint rows</code> followed by each column as <code>byte[(rows + 7) / 8] empty</code> and the values of the
+ * fields that aren't empty,<br>
+ * then <code>varint 0, varint totalRows</code>.<br><br>
+ *
+ * The {@code empty} bits are set for empty fields, from the lowest bit of the first byte. Varints hold 7 bits per byte, lowest first, with
+ * the top bit set on every byte but the last. Values are written as:
+ * <ul>
+ * <li>{@link RowSink.Type#TEXT}: <code>varint length</code> and that many bytes of UTF-8</li>
+ * <li>{@link RowSink.Type#INTEGER}: a zigzag varint (0, -1, 1, -2... are written as 0, 1, 2, 3...)</li>
+ * <li>{@link RowSink.Type#DECIMAL}: the number times 10<sup>decimals</sup>, rounded, as a zigzag varint. A number that is too large for
+ * that, or isn't a number, is written as the zigzag varint of {@link Long#MIN_VALUE} followed by its 8 bytes as a {@code double}.</li>
+ * </ul>
+ * So a KinchRank of 0 takes a single byte, and most others take 4 with 6 decimals.
+ * @author Kawa
+ */
+public class ColumnarSink implements RowSink
+{
+	static final int MAGIC = 0x4B434F4C;
+	static final int VERSION = 1;
+
+	/**
+	 * The value of a {@link RowSink.Type#DECIMAL} field that is followed by the number's 8 bytes.
+	 */
+	static final long RAW = Long.MIN_VALUE;
+
+	/**
+	 * The amount of rows in each row group, unless a sink is given another amount.
+	 */
+	public static final int DEFAULT_ROW_GROUP = 8192;
+
+	private final DataOutputStream out;
+	private final int decimals;
+	private final double scale;
+	private final int rowGroup;
+
+	private Type[] types;
+	private String[][] texts;
+	private long[][] numbers;
+	private boolean[][] empty;
+	private int rows;
+	private int column;
+	private long totalRows;
+
+	/**
+	 * @param file The file.
+	 * @param decimals The amount of decimals {@link RowSink.Type#DECIMAL} fields are kept with, from 0 to {@link Util#MAX_DECIMALS}.
+	 * @throws IOException
+	 */
+	public ColumnarSink(File file, int decimals) throws IOException
+	{
+		this(new FileOutputStream(file), decimals, DEFAULT_ROW_GROUP);
+	}
+
+	/**
+	 * @param out Where the file is written to. It is closed along with this sink.
+	 * @param decimals The amount of decimals {@link RowSink.Type#DECIMAL} fields are kept with, from 0 to {@link Util#MAX_DECIMALS}.
+	 * @param rowGroup The amount of rows in each row group.
+	 */
+	public ColumnarSink(OutputStream out, int decimals, int rowGroup)
+	{
+		if(decimals < 0 || decimals > Util.MAX_DECIMALS)
+			throw new IllegalArgumentException("Numbers can be kept with 0 to " + Util.MAX_DECIMALS + " decimals, not " + decimals);
+		if(rowGroup < 1)
+			throw new IllegalArgumentException("A row group needs at least 1 row, not " + rowGroup);
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.decimals = decimals;
+		this.scale = Math.pow(10.0, decimals);
+		this.rowGroup = rowGroup;
+	}
+
+	@Override
+	public void writeHeader(String[] names, Type[] types) throws IOException
+	{
+		if(names.length != types.length)
+			throw new IllegalArgumentException(names.length + " column names were given for " + types.length + " columns");
+
+		this.types = types.clone();
+		texts = new String[types.length][];
+		numbers = new long[types.length][];
+		empty = new boolean[types.length][rowGroup];
+		for(int i = 0; i < types.length; i++)
+		{
+			if(types[i] == Type.TEXT)
+				texts[i] = new String[rowGroup];
+			else
+				numbers[i] = new long[rowGroup];
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeByte(decimals);
+		writeVarint(out, types.length);
+		for(int i = 0; i < types.length; i++)
+		{
+			out.writeUTF(names[i]);
+			out.writeByte(types[i].ordinal());
+		}
+	}
+
+	@Override
+	public void writeField(String value) throws IOException
+	{
+		if(value == null)
+		{
+			writeEmpty();
+			return;
+		}
+		texts[next(Type.TEXT)][rows] = value;
+	}
+
+	@Override
+	public void writeField(double value) throws IOException
+	{
+		numbers[next(Type.DECIMAL)][rows] = Double.doubleToRawLongBits(value);
+	}
+
+	@Override
+	public void writeField(long value) throws IOException
+	{
+		checkColumn();
+		if(types[column] == Type.DECIMAL)
+			writeField((double) value);
+		else
+			numbers[next(Type.INTEGER)][rows] = value;
+	}
+
+	@Override
+	public void writeEmpty() throws IOException
+	{
+		checkColumn();
+		empty[column][rows] = true;
+		column++;
+	}
+
+	@Override
+	public void endRow() throws IOException
+	{
+		if(types == null)
+			throw new IllegalStateException("The header hasn't been written");
+		if(column != types.length)
+			throw new IllegalStateException("A row has " + column + " fields instead of " + types.length);
+		column = 0;
+		if(++rows == rowGroup)
+			writeRowGroup();
+	}
+
+	/**
+	 * Moves to the next field, which should be in a column of a certain type.
+	 * @return The field's column.
+	 */
+	private int next(Type type)
+	{
+		checkColumn();
+		if(types[column] != type)
+			throw new IllegalStateException("Column " + column + " holds " + types[column] + ", not " + type);
+		empty[column][rows] = false;
+		return column++;
+	}
+
+	private void checkColumn()
+	{
+		if(types == null)
+			throw new IllegalStateException("The header hasn't been written");
+		if(column == types.length)
+			throw new IllegalStateException("A row has more than " + types.length + " fields");
+	}
+
+	private void writeRowGroup() throws IOException
+	{
+		if(rows == 0)
+			return;
+
+		writeVarint(out, rows);
+		for(int i = 0; i < types.length; i++)
+		{
+			boolean[] columnEmpty = empty[i];
+			for(int from = 0; from < rows; from += 8)
+			{
+				int bits = 0;
+				for(int row = from; row < Math.min(from + 8, rows); row++)
+				{
+					if(columnEmpty[row])
+						bits |= 1 << (row - from);
+				}
+				out.writeByte(bits);
+			}
+
+			for(int row = 0; row < rows; row++)
+			{
+				if(columnEmpty[row])
+					continue;
+				switch(types[i])
+				{
+					case TEXT:
+						byte[] bytes = texts[i][row].getBytes(StandardCharsets.UTF_8);
+						writeVarint(out, bytes.length);
+						out.write(bytes);
+						texts[i][row] = null;
+						break;
+					case INTEGER:
+						writeVarint(out, zigzag(numbers[i][row]));
+						break;
+					case DECIMAL:
+						writeDecimal(Double.longBitsToDouble(numbers[i][row]));
+						break;
+				}
+			}
+		}
+		totalRows += rows;
+		rows = 0;
+	}
+
+	private void writeDecimal(double value) throws IOException
+	{
+		double scaled = value * scale;
+		if(Math.abs(scaled) < 1e15)
+			writeVarint(out, zigzag(Math.round(scaled)));
+		else
+		{
+			writeVarint(out, zigzag(RAW));
+			out.writeDouble(value);
+		}
+	}
+
+	private static long zigzag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static void writeVarint(DataOutputStream out, long value) throws IOException
+	{
+		while((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			if(types != null)
+			{
+				if(column != 0)
+					throw new IllegalStateException("The last row wasn't ended");
+				writeRowGroup();
+				writeVarint(out, 0);
+				writeVarint(out, totalRows);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
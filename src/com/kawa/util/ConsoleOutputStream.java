@@ -1,27 +1,204 @@
 package com.kawa.util;
 
-import java.io.IOException;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
 
 /**
- * A basic output stream for writing the console code to a JTextArea.
+ * An output stream for writing the console to a JTextArea. Writing never touches the text area: the bytes are only queued, so the threads
+ * that print (such as the workers of {@link Util#unzipFile(java.io.File, java.io.File, java.util.function.Predicate, int)}) never wait on
+ * Swing or on each other. A timer on the Swing event thread takes everything queued since it last ran, at most every
+ * {@link #REFRESH_MILLIS} milliseconds, and appends it to the text area all at once, so the text area is repainted once per refresh rather
+ * than once per character.<br><br>
+ *
+ * Only the last {@link #DEFAULT_MAX_CHARS} characters are kept, and the oldest lines are removed from the text area as new ones come in.
+ * If more is printed than the text area can take before the timer runs, the oldest of it is skipped, and the amount skipped is noted in
+ * the console.
  * @author Kawa
  */
 public class ConsoleOutputStream extends OutputStream
 {
-	private JTextArea textArea;
-	
-	public ConsoleOutputStream(JTextArea area) 
+	/**
+	 * The most often the text area is updated, in milliseconds.
+	 */
+	public static final int REFRESH_MILLIS = 100;
+
+	/**
+	 * The amount of characters kept in the text area by default.
+	 */
+	public static final int DEFAULT_MAX_CHARS = 500000;
+
+	private final JTextArea textArea;
+	private final int maxChars;
+	private final int maxPendingBytes;
+	private final ConcurrentLinkedQueue<byte[]> pending = new ConcurrentLinkedQueue<byte[]>();
+	private final AtomicInteger pendingBytes = new AtomicInteger();
+	private final AtomicLong skippedBytes = new AtomicLong();
+	private final Timer timer;
+
+	// only used on the event thread
+	private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private ByteBuffer undecoded = ByteBuffer.allocate(0);
+
+	public ConsoleOutputStream(JTextArea area)
+	{
+		this(area, DEFAULT_MAX_CHARS);
+	}
+
+	/**
+	 * @param area The text area.
+	 * @param maxChars The amount of characters to keep in the text area.
+	 */
+	public ConsoleOutputStream(JTextArea area, int maxChars)
 	{
 		this.textArea = area;
+		this.maxChars = maxChars;
+		// a character is at most 4 bytes, so this is always enough to fill the text area
+		this.maxPendingBytes = (int) Math.min(Integer.MAX_VALUE / 2, maxChars * 4L);
+		this.timer = new Timer(REFRESH_MILLIS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				drain();
+			}
+		});
+		timer.start();
+	}
+
+	@Override
+	public void write(int b)
+	{
+		enqueue(new byte[] {(byte) b});
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len)
+	{
+		if(len > 0)
+			enqueue(Arrays.copyOfRange(b, off, off + len));
 	}
 
+	private void enqueue(byte[] bytes)
+	{
+		pending.offer(bytes);
+		// the timer has fallen behind, so the oldest output that won't fit in the text area anyway is skipped
+		if(pendingBytes.addAndGet(bytes.length) > maxPendingBytes)
+		{
+			byte[] oldest;
+			while(pendingBytes.get() > maxPendingBytes && (oldest = pending.poll()) != null)
+			{
+				pendingBytes.addAndGet(-oldest.length);
+				skippedBytes.addAndGet(oldest.length);
+			}
+		}
+	}
+
+	/**
+	 * @return The text area the console is written to.
+	 */
+	public JTextArea getTextArea()
+	{
+		return textArea;
+	}
+
+	/**
+	 * Stops the timer, after appending whatever is still queued.
+	 */
 	@Override
-	public void write(int b) throws IOException 
+	public void close()
 	{
-		textArea.append(String.valueOf((char) b));
+		timer.stop();
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		});
+	}
+
+	/**
+	 * Appends everything queued to the text area. This runs on the event thread.
+	 */
+	private void drain()
+	{
+		String text = decode();
+		long skipped = skippedBytes.getAndSet(0);
+		if(skipped > 0)
+			text = "... (" + skipped + " bytes of output skipped)\n" + text;
+		if(text.isEmpty())
+			return;
+
+		if(text.length() >= maxChars)
+		{
+			int from = text.length() - maxChars;
+			int line = text.indexOf('\n', from);
+			textArea.setText(text.substring(line >= 0 && line + 1 < text.length() ? line + 1 : from));
+		}
+		else
+		{
+			textArea.append(text);
+			int excess = textArea.getDocument().getLength() - maxChars;
+			if(excess > 0)
+			{
+				try
+				{
+					// removes whole lines, up to the end of the line the excess ends in
+					textArea.replaceRange("", 0, Math.min(textArea.getDocument().getLength(), textArea.getLineEndOffset(textArea.getLineOfOffset(excess))));
+				}
+				catch(BadLocationException e)
+				{
+					textArea.replaceRange("", 0, excess);
+				}
+			}
+		}
 		textArea.setCaretPosition(textArea.getDocument().getLength());
-	}	
+	}
+
+	/**
+	 * Takes everything queued and decodes it. A character split between two writes is kept until the rest of it comes in.
+	 */
+	private String decode()
+	{
+		int size = undecoded.remaining();
+		int count = 0;
+		byte[][] chunks = new byte[16][];
+		byte[] chunk;
+		while((chunk = pending.poll()) != null)
+		{
+			pendingBytes.addAndGet(-chunk.length);
+			if(count == chunks.length)
+				chunks = Arrays.copyOf(chunks, count * 2);
+			chunks[count++] = chunk;
+			size += chunk.length;
+		}
+		if(size == 0)
+			return "";
+
+		ByteBuffer in = ByteBuffer.allocate(size);
+		in.put(undecoded);
+		for(int i = 0; i < count; i++)
+			in.put(chunks[i]);
+		in.flip();
+		CharBuffer out = CharBuffer.allocate((int) (size * (double) decoder.maxCharsPerByte()) + 1);
+		decoder.decode(in, out, false);
+		undecoded = in;
+		out.flip();
+		return out.toString();
+	}
 }
@@ -0,0 +1,56 @@
+package com.kawa.util;
+
+import java.io.PrintStream;
+
+/**
+ * Shows progress on the console, for runs without the GUI, as a line such as
+ * <code>&gt;&gt; Downloading WCA_export.tsv.zip: 12.5 MB of 40.0 MB, 31.2% completed</code>. A stage gets a line at most once every
+ * {@link #INTERVAL_MILLIS} milliseconds, and one more when it finishes, so the console (or the file it's redirected to) doesn't fill up
+ * with progress. Each update is a whole line, so it can't be broken up by the other lines being printed at the same time.
+ * @author Kawa
+ */
+public class ConsoleProgress implements ProgressListener
+{
+	/**
+	 * The least time between two lines of the same stage, in milliseconds.
+	 */
+	public static final long INTERVAL_MILLIS = 1000;
+
+	private final PrintStream out;
+	private Progress last;
+	private long lastLine;
+	private Progress ended;
+
+	/**
+	 * Shows the progress on {@link System#out}.
+	 */
+	public ConsoleProgress()
+	{
+		this(System.out);
+	}
+
+	/**
+	 * @param out Where to show the progress.
+	 */
+	public ConsoleProgress(PrintStream out)
+	{
+		this.out = out;
+	}
+
+	@Override
+	public synchronized void progress(Progress progress)
+	{
+		if(progress == ended)
+			return;
+		long now = System.nanoTime();
+		boolean finished = progress.isFinished();
+		if(!finished && progress == last && now - lastLine < INTERVAL_MILLIS * 1000000)
+			return;
+
+		out.println(">> " + progress);
+		last = progress;
+		lastLine = now;
+		if(finished)
+			ended = progress;
+	}
+}
@@ -3,16 +3,24 @@ package com.kawa.util;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-
-import javax.swing.JProgressBar;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
 
 /**
- * Downloads a file, and outputs its progress to a {@link JProgressBar}.
+ * Downloads a file, and outputs its progress to a {@link ProgressListener}.<br><br>
+ * 
+ * The file is always downloaded to a temporary file next to it first, which then replaces it in one move, so a download that fails
+ * never leaves a broken file behind. {@link #downloadFileIfModified()} also keeps the file's ETag and Last-Modified date, so a file
+ * that hasn't changed on the server isn't downloaded again.
  * @author Kawa
  *
  */
@@ -22,14 +30,14 @@ public class Download {
 
 	private URL url;
 	private HttpURLConnection connection;
-	private double progress;
-	private JProgressBar pb;
+	private ProgressListener listener;
+	private OutputStream tee;
 
-	public Download(URL url, File file, JProgressBar b) throws MalformedURLException, IOException 
+	public Download(URL url, File file, ProgressListener listener) throws MalformedURLException, IOException 
 	{
 		this.url = url;
 		this.file = file;
-		this.pb = b;
+		this.listener = listener;
 		connect();
 	}
 	
@@ -57,30 +65,181 @@ public class Download {
 	{
 		if(connection.getResponseCode() == 200)
 		{
-			int bufferSize = 1024;
-			long total = 0;
-			long filesize = connection.getContentLengthLong();
-			FileOutputStream fos = new FileOutputStream(file);
-			BufferedInputStream in = new BufferedInputStream(connection.getInputStream());
-			BufferedOutputStream out = new BufferedOutputStream(fos, 1024);
+			transfer();
+		}
+		else
+		{
+			throw new IOException("Error connecting to the server! HTTP reponse code returned: " + connection.getResponseCode()); //HTTP code response was not HTTP_OK
+		}
+	}
+	
+	/**
+	 * Downloads a file, unless the copy already downloaded is still the same as the one on the server. The server is asked with the
+	 * If-None-Match and If-Modified-Since headers, using what it sent back for the last download, which is kept next to the file
+	 * (see {@link #getMetadataFile()}).
+	 * @return {@code true} if the file was downloaded, or {@code false} if the copy already downloaded was kept.
+	 * @throws IOException
+	 */
+	public boolean downloadFileIfModified() throws IOException 
+	{
+		Properties metadata = readMetadata();
+		if(file.isFile() && file.length() == Long.parseLong(metadata.getProperty("length", "-1")))
+		{
+			if(metadata.getProperty("etag") != null)
+				connection.setRequestProperty("If-None-Match", metadata.getProperty("etag"));
+			if(metadata.getProperty("lastModified") != null)
+				connection.setRequestProperty("If-Modified-Since", metadata.getProperty("lastModified"));
+		}
+		
+		int code = connection.getResponseCode();
+		if(code == HttpURLConnection.HTTP_NOT_MODIFIED)
+		{
+			connection.disconnect();
+			return false;
+		}
+		else if(code == 200)
+		{
+			metadata = new Properties();
+			if(connection.getHeaderField("ETag") != null)
+				metadata.setProperty("etag", connection.getHeaderField("ETag"));
+			if(connection.getHeaderField("Last-Modified") != null)
+				metadata.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+			
+			getMetadataFile().delete();
+			transfer();
+			metadata.setProperty("length", Long.toString(file.length()));
+			writeMetadata(metadata);
+			return true;
+		}
+		else
+		{
+			throw new IOException("Error connecting to the server! HTTP reponse code returned: " + code); //HTTP code response was not HTTP_OK or HTTP_NOT_MODIFIED
+		}
+	}
+	
+	/**
+	 * Reads the body of the response into a temporary file, and then moves it over the file.
+	 * @throws IOException
+	 */
+	private void transfer() throws IOException
+	{
+		File temp = new File(file.getPath() + ".part");
+		int bufferSize = 1024;
+		long total = 0;
+		long filesize = connection.getContentLengthLong();
+		Progress progress = new Progress(listener, "Downloading " + file.getName(), filesize, true);
+		try(BufferedInputStream in = new BufferedInputStream(connection.getInputStream());
+				BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1024))
+		{
 			byte[] data = new byte[bufferSize];
 			int i = 0;
 			while ((i = in.read(data, 0, bufferSize)) != -1)
 			{
 				total += i;
 				out.write(data, 0, i);
-				progress = total * 100.0 / filesize;
-				this.pb.setValue((int) progress);
-				this.pb.setString(Util.roundToNearestDecimal(total / 1048576.0, 2) + " MB of " + Util.roundToNearestDecimal(filesize / 1048576.0, 2) + " MB, " + Util.roundToNearestDecimal(progress, 1) + "% completed");
+				if(tee != null)
+					tee.write(data, 0, i);
+				Metrics.get().addDownloaded(i);
+				progress.add(i);
 			}
-			
-			out.close();
-			in.close();
 		}
-		else
+		catch(IOException | RuntimeException e)
 		{
-			throw new IOException("Error connecting to the server! HTTP reponse code returned: " + connection.getResponseCode()); //HTTP code response was not HTTP_OK
+			// the connection dropped or the disk is full, either way what was received is of no use
+			temp.delete();
+			throw e;
 		}
+		progress.finish();
+		
+		if(filesize >= 0 && total != filesize)
+		{
+			temp.delete();
+			throw new IOException("The download ended early! Received " + total + " of " + filesize + " bytes");
+		}
+		
+		move(temp, file);
+	}
+	
+	/**
+	 * Moves a file over another in one step, if the file system allows it.
+	 * @param from The file to move.
+	 * @param to Where to move it.
+	 * @throws IOException
+	 */
+	static void move(File from, File to) throws IOException
+	{
+		try
+		{
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException e)
+		{
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private Properties readMetadata() throws IOException
+	{
+		return readProperties(getMetadataFile());
+	}
+	
+	private void writeMetadata(Properties metadata) throws IOException
+	{
+		writeProperties(getMetadataFile(), metadata, url.toString());
+	}
+	
+	/**
+	 * Reads a {@link Properties} file.
+	 * @param metadataFile The file.
+	 * @return What was in the file, or nothing if it doesn't exist.
+	 * @throws IOException
+	 */
+	static Properties readProperties(File metadataFile) throws IOException
+	{
+		Properties metadata = new Properties();
+		if(metadataFile.isFile())
+		{
+			try(FileInputStream in = new FileInputStream(metadataFile))
+			{
+				metadata.load(in);
+			}
+		}
+		return metadata;
+	}
+	
+	/**
+	 * Writes a {@link Properties} file through a temporary file, so it is never left half-written.
+	 * @param metadataFile The file.
+	 * @param metadata What to write.
+	 * @param comment The comment at the top of the file.
+	 * @throws IOException
+	 */
+	static void writeProperties(File metadataFile, Properties metadata, String comment) throws IOException
+	{
+		File temp = new File(metadataFile.getPath() + ".tmp");
+		try(FileOutputStream out = new FileOutputStream(temp))
+		{
+			metadata.store(out, comment);
+		}
+		move(temp, metadataFile);
+	}
+	
+	/**
+	 * @return The file that holds the ETag and Last-Modified date of the last download, next to the downloaded file.
+	 */
+	public File getMetadataFile()
+	{
+		return new File(file.getPath() + ".properties");
+	}
+	
+	/**
+	 * Also writes the file to a stream as it is downloaded, such as to read it while it's still being downloaded (see {@link BlockingPipe}).
+	 * Nothing is written to it if the file isn't downloaded, and it isn't closed.
+	 * @param tee The stream.
+	 */
+	public void setTee(OutputStream tee)
+	{
+		this.tee = tee;
 	}
 	
 	public File getFile() 
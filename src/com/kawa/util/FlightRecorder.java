@@ -0,0 +1,138 @@
+package com.kawa.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records each stage of {@link Metrics} as a <code>com.kawa.kinch.Stage</code> event of JDK Flight Recorder, with the stage's name, counters
+ * and the heap's high-water mark, so that a recording of a run (<code>-XX:StartFlightRecording</code>, or <code>jcmd</code>) shows each
+ * stage next to the JVM's own events. The events show up in JDK Mission Control under <i>SoCalKinch</i>.<br><br>
+ *
+ * The program still runs on Java 8, which has no <code>jdk.jfr</code>, so the event is made at runtime through
+ * <code>jdk.jfr.EventFactory</code> and used by reflection. Without Flight Recorder, nothing is recorded.
+ * @author Kawa
+ */
+final class FlightRecorder
+{
+	private static final Object FACTORY;
+	private static final Method NEW_EVENT;
+	private static final Method BEGIN;
+	private static final Method END;
+	private static final Method SHOULD_COMMIT;
+	private static final Method SET;
+	private static final Method COMMIT;
+
+	static
+	{
+		Object factory = null;
+		Method newEvent = null, begin = null, end = null, shouldCommit = null, set = null, commit = null;
+		try
+		{
+			Class<?> element = Class.forName("jdk.jfr.AnnotationElement");
+			Constructor<?> annotation = element.getConstructor(Class.class, Object.class);
+			Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+
+			List<Object> event = Arrays.asList(annotation.newInstance(annotation("Name"), "com.kawa.kinch.Stage"),
+					annotation.newInstance(annotation("Label"), "Stage"),
+					annotation.newInstance(annotation("Category"), new String[] {"SoCalKinch"}),
+					annotation.newInstance(annotation("Description"), "A stage of a run, with what it counted while it ran"),
+					annotation.newInstance(annotation("StackTrace"), false));
+
+			List<Object> fields = new ArrayList<Object>();
+			fields.add(field.newInstance(String.class, "stage", Arrays.asList(annotation.newInstance(annotation("Label"), "Stage"))));
+			for(String counter : Metrics.COUNTERS)
+			{
+				List<Object> annotations = new ArrayList<Object>();
+				annotations.add(annotation.newInstance(annotation("Label"), counter));
+				if(counter.startsWith("bytes"))
+					annotations.add(annotation.newInstance(annotation("DataAmount"), "BYTES"));
+				fields.add(field.newInstance(long.class, counter, annotations));
+			}
+			fields.add(field.newInstance(long.class, "heapHighWater", Arrays.asList(annotation.newInstance(annotation("Label"), "Heap High-Water"),
+					annotation.newInstance(annotation("DataAmount"), "BYTES"))));
+
+			factory = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class).invoke(null, event, fields);
+			newEvent = factory.getClass().getMethod("newEvent");
+			Class<?> type = Class.forName("jdk.jfr.Event");
+			begin = type.getMethod("begin");
+			end = type.getMethod("end");
+			shouldCommit = type.getMethod("shouldCommit");
+			set = type.getMethod("set", int.class, Object.class);
+			commit = type.getMethod("commit");
+		}
+		catch(ReflectiveOperationException | LinkageError | RuntimeException e)
+		{
+			// no Flight Recorder, such as on Java 8
+			factory = null;
+		}
+		FACTORY = factory;
+		NEW_EVENT = newEvent;
+		BEGIN = begin;
+		END = end;
+		SHOULD_COMMIT = shouldCommit;
+		SET = set;
+		COMMIT = commit;
+	}
+
+	private FlightRecorder()
+	{
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Annotation> annotation(String name) throws ClassNotFoundException
+	{
+		return (Class<? extends Annotation>) Class.forName("jdk.jfr." + name);
+	}
+
+	/**
+	 * Starts the event of a stage.
+	 * @return The event, or {@code null} without Flight Recorder.
+	 */
+	static Object begin()
+	{
+		if(FACTORY == null)
+			return null;
+		try
+		{
+			Object event = NEW_EVENT.invoke(FACTORY);
+			BEGIN.invoke(event);
+			return event;
+		}
+		catch(ReflectiveOperationException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Ends the event of a stage, and records it if Flight Recorder is recording it.
+	 * @param event The event from {@link #begin()}, which may be {@code null}.
+	 * @param stage The name of the stage.
+	 * @param counted What each of {@link Metrics#COUNTERS} counted while the stage ran.
+	 * @param heapHighWater The heap's high-water mark when the stage ended.
+	 */
+	static void commit(Object event, String stage, long[] counted, long heapHighWater)
+	{
+		if(event == null)
+			return;
+		try
+		{
+			END.invoke(event);
+			if(!(Boolean) SHOULD_COMMIT.invoke(event))
+				return;
+			SET.invoke(event, 0, stage);
+			for(int i = 0; i < counted.length; i++)
+				SET.invoke(event, i + 1, counted[i]);
+			SET.invoke(event, counted.length + 1, heapHighWater);
+			COMMIT.invoke(event);
+		}
+		catch(ReflectiveOperationException e)
+		{
+			// the stage is still in the run report
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.kawa.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a table as JSON Lines: one JSON object per row, on its own line, with a member for each column. The header isn't written as a row
+ * of its own, since every object is keyed by the column names:<br><br>
+ *
+ * <code>{"Person":"2009ZEMD01","KinchRank":81.517243,"222":100.0, ...}</code><br><br>
+ *
+ * Numbers are written like {@link CsvStreamWriter} writes them. Empty fields, and numbers that JSON can't hold (NaN and infinity), are
+ * written as <code>null</code>.
+ * @author Kawa
+ */
+public class JsonLinesSink extends TextSink
+{
+	private static final char[] NULL = "null".toCharArray();
+
+	/**
+	 * The name of each column, already quoted and followed by a colon.
+	 */
+	private char[][] keys;
+	private int column;
+
+	/**
+	 * @param file The .jsonl file, which is written as UTF-8.
+	 * @param decimals The amount of decimals numbers are written with, from 0 to {@link Util#MAX_DECIMALS}.
+	 * @throws IOException
+	 */
+	public JsonLinesSink(File file, int decimals) throws IOException
+	{
+		this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), decimals);
+	}
+
+	/**
+	 * @param out Where the lines are written to. It is closed along with this sink.
+	 * @param decimals The amount of decimals numbers are written with, from 0 to {@link Util#MAX_DECIMALS}.
+	 */
+	public JsonLinesSink(Writer out, int decimals)
+	{
+		super(out, decimals);
+	}
+
+	@Override
+	public void writeHeader(String[] names, Type[] types)
+	{
+		keys = new char[names.length][];
+		for(int i = 0; i < names.length; i++)
+			keys[i] = (quote(names[i]) + ":").toCharArray();
+	}
+
+	@Override
+	public void writeField(String value) throws IOException
+	{
+		if(value == null)
+		{
+			writeEmpty();
+			return;
+		}
+
+		startField();
+		put('"');
+		for(int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if(c == '"' || c == '\\')
+			{
+				put('\\');
+				put(c);
+			}
+			else if(c < 0x20)
+				put(escape(c).toCharArray());
+			else
+				put(c);
+		}
+		put('"');
+	}
+
+	@Override
+	public void writeField(double value) throws IOException
+	{
+		startField();
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			put(NULL);
+		else
+			putDecimal(value);
+	}
+
+	@Override
+	public void writeField(long value) throws IOException
+	{
+		startField();
+		putLong(value);
+	}
+
+	@Override
+	public void writeEmpty() throws IOException
+	{
+		startField();
+		put(NULL);
+	}
+
+	@Override
+	public void endRow() throws IOException
+	{
+		if(column == 0)
+			put('{');
+		put('}');
+		put('\n');
+		column = 0;
+	}
+
+	private void startField() throws IOException
+	{
+		if(keys == null)
+			throw new IllegalStateException("The header hasn't been written");
+		if(column == keys.length)
+			throw new IllegalStateException("A row has more than " + keys.length + " fields");
+		put(column == 0 ? '{' : ',');
+		put(keys[column++]);
+	}
+
+	static String quote(String text)
+	{
+		StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if(c < 0x20)
+				quoted.append(escape(c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static String escape(char c)
+	{
+		return String.format("\\u%04x", (int) c);
+	}
+}
@@ -0,0 +1,357 @@
+package com.kawa.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts what a run goes through: how long each stage takes, how many lines of the ranks files are scanned and how many of them are results
+ * being looked for, how many bytes of the database are downloaded, inflated and read, and the most the heap holds. There is one set of
+ * counters for the whole program ({@link #get()}), which every part of it adds to. They can be read:<br><br>
+ *
+ * while the run goes on, through JMX, as the MBean <code>com.kawa.kinch:type=Metrics</code> (see {@link MetricsMBean})<br>
+ * by JDK Flight Recorder, which records a <code>com.kawa.kinch.Stage</code> event for every stage when it's running (see
+ * {@link FlightRecorder})<br>
+ * at the end of the run, from the run report written by {@link #writeReport(File, boolean)}<br><br>
+ *
+ * A stage is timed like this:
+ * <pre>
+ * try(Metrics.Stage stage = Metrics.get().start("download"))
+ * {
+ *     ...
+ * }
+ * </pre>
+ * Stages can run at the same time, in which case each of them counts everything that happened while it ran.
+ * @author Kawa
+ */
+public final class Metrics implements MetricsMBean
+{
+	/**
+	 * The name the counters are registered under in JMX.
+	 */
+	public static final String OBJECT_NAME = "com.kawa.kinch:type=Metrics";
+
+	/**
+	 * The names of the counters, as they are written in the run report.
+	 */
+	static final String[] COUNTERS = {"rowsScanned", "rowsMatched", "bytesDownloaded", "bytesInflated", "bytesRead"};
+	private static final int SCANNED = 0;
+	private static final int MATCHED = 1;
+	private static final int DOWNLOADED = 2;
+	private static final int INFLATED = 3;
+	private static final int READ = 4;
+
+	private static final Metrics INSTANCE = register(new Metrics());
+
+	private final LongAdder[] counters = new LongAdder[COUNTERS.length];
+	private final List<Stage> finished = new ArrayList<Stage>();
+	private final List<Stage> running = new ArrayList<Stage>();
+	private volatile long startedMillis;
+	private volatile long startedNanos;
+
+	private Metrics()
+	{
+		for(int i = 0; i < counters.length; i++)
+			counters[i] = new LongAdder();
+		startedMillis = System.currentTimeMillis();
+		startedNanos = System.nanoTime();
+	}
+
+	private static Metrics register(Metrics metrics)
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+		}
+		catch(JMException | SecurityException e)
+		{
+			System.out.println(">> Couldn't register the metrics with JMX: " + e);
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return The counters of the program.
+	 */
+	public static Metrics get()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts a new run: every counter goes back to 0, the finished stages are forgotten and the heap's high-water mark is reset. Stages that
+	 * are still running carry on.
+	 */
+	public synchronized void reset()
+	{
+		for(LongAdder counter : counters)
+			counter.reset();
+		finished.clear();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+		}
+		startedMillis = System.currentTimeMillis();
+		startedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Starts timing a stage, which ends when it's closed.
+	 * @param name The name of the stage.
+	 * @return The stage.
+	 */
+	public Stage start(String name)
+	{
+		Stage stage = new Stage(name);
+		synchronized(this)
+		{
+			running.add(stage);
+		}
+		return stage;
+	}
+
+	/**
+	 * Counts some lines of a ranks file that were scanned.
+	 * @param lines The amount of lines.
+	 * @param matched How many of them were results being looked for.
+	 * @param bytes The amount of bytes they took.
+	 */
+	public void addScanned(long lines, long matched, long bytes)
+	{
+		counters[SCANNED].add(lines);
+		counters[MATCHED].add(matched);
+		counters[READ].add(bytes);
+	}
+
+	/**
+	 * Counts some bytes of the database that were downloaded.
+	 * @param bytes The amount of bytes.
+	 */
+	public void addDownloaded(long bytes)
+	{
+		counters[DOWNLOADED].add(bytes);
+	}
+
+	/**
+	 * Counts some bytes that were inflated out of the database .zip file.
+	 * @param bytes The amount of bytes.
+	 */
+	public void addInflated(long bytes)
+	{
+		counters[INFLATED].add(bytes);
+	}
+
+	@Override
+	public long getRunMillis()
+	{
+		return (System.nanoTime() - startedNanos) / 1000000;
+	}
+
+	@Override
+	public synchronized String[] getRunningStages()
+	{
+		String[] names = new String[running.size()];
+		for(int i = 0; i < names.length; i++)
+			names[i] = running.get(i).name;
+		return names;
+	}
+
+	@Override
+	public synchronized String[] getStageNames()
+	{
+		String[] names = new String[finished.size()];
+		for(int i = 0; i < names.length; i++)
+			names[i] = finished.get(i).name;
+		return names;
+	}
+
+	@Override
+	public synchronized long[] getStageMillis()
+	{
+		long[] millis = new long[finished.size()];
+		for(int i = 0; i < millis.length; i++)
+			millis[i] = finished.get(i).nanos / 1000000;
+		return millis;
+	}
+
+	@Override
+	public long getRowsScanned()
+	{
+		return counters[SCANNED].sum();
+	}
+
+	@Override
+	public long getRowsMatched()
+	{
+		return counters[MATCHED].sum();
+	}
+
+	@Override
+	public long getBytesDownloaded()
+	{
+		return counters[DOWNLOADED].sum();
+	}
+
+	@Override
+	public long getBytesInflated()
+	{
+		return counters[INFLATED].sum();
+	}
+
+	@Override
+	public long getBytesRead()
+	{
+		return counters[READ].sum();
+	}
+
+	/**
+	 * The heap's high-water mark is the sum of the peaks of each of its pools, so it can be a little more than the heap ever held at once.
+	 */
+	@Override
+	public long getHeapHighWater()
+	{
+		long used = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP)
+				used += pool.getPeakUsage().getUsed();
+		}
+		return used;
+	}
+
+	private long[] counters()
+	{
+		long[] values = new long[counters.length];
+		for(int i = 0; i < values.length; i++)
+			values[i] = counters[i].sum();
+		return values;
+	}
+
+	/**
+	 * Writes the run report, a JSON object with the totals of the run and each stage that ran, in the order they finished, such as:
+	 * <pre>
+	 * {"started":"2024-05-01T10:00:00Z","completed":true,"millis":41250.3,"rowsScanned":2214530,...,"heapHighWater":1073741824,
+	 *  "running":[],"stages":[{"name":"download","started":"2024-05-01T10:00:00Z","millis":12001.5,"rowsScanned":0,...},...]}
+	 * </pre>
+	 * all on one line. The counters of a stage are what was counted while it ran, and its <code>heapHighWater</code> is the most the heap
+	 * had held by the time it ended.
+	 * @param file The file.
+	 * @param completed Flags whether the run finished, or stopped because of an error.
+	 * @throws IOException
+	 */
+	public void writeReport(File file, boolean completed) throws IOException
+	{
+		try(Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))
+		{
+			out.write(toJson(completed));
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * @param completed Flags whether the run finished.
+	 * @return The run report, see {@link #writeReport(File, boolean)}.
+	 */
+	public synchronized String toJson(boolean completed)
+	{
+		StringBuilder json = new StringBuilder(256 + finished.size() * 256);
+		json.append("{\"started\":").append(JsonLinesSink.quote(Instant.ofEpochMilli(startedMillis).toString()));
+		json.append(",\"completed\":").append(completed);
+		json.append(",\"millis\":").append(millis(System.nanoTime() - startedNanos));
+		append(json, counters(), getHeapHighWater());
+
+		json.append(",\"running\":[");
+		for(int i = 0; i < running.size(); i++)
+			json.append(i == 0 ? "" : ",").append(JsonLinesSink.quote(running.get(i).name));
+		json.append("],\"stages\":[");
+		for(int i = 0; i < finished.size(); i++)
+		{
+			Stage stage = finished.get(i);
+			json.append(i == 0 ? "{" : ",{");
+			json.append("\"name\":").append(JsonLinesSink.quote(stage.name));
+			json.append(",\"started\":").append(JsonLinesSink.quote(Instant.ofEpochMilli(stage.startedMillis).toString()));
+			json.append(",\"millis\":").append(millis(stage.nanos));
+			append(json, stage.counted, stage.heapHighWater);
+			json.append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	private static void append(StringBuilder json, long[] values, long heapHighWater)
+	{
+		for(int i = 0; i < values.length; i++)
+			json.append(",\"").append(COUNTERS[i]).append("\":").append(values[i]);
+		json.append(",\"heapHighWater\":").append(heapHighWater);
+	}
+
+	private static double millis(long nanos)
+	{
+		return Math.round(nanos / 1e5) / 10.0;
+	}
+
+	/**
+	 * A stage of a run, timed from when it was started with {@link Metrics#start(String)} until it's closed.
+	 */
+	public final class Stage implements AutoCloseable
+	{
+		private final String name;
+		private final long startedMillis;
+		private final long startedNanos;
+		private final long[] counted;
+		private final Object event;
+		private long nanos = -1;
+		private long heapHighWater;
+
+		private Stage(String name)
+		{
+			this.name = name;
+			this.event = FlightRecorder.begin();
+			this.startedMillis = System.currentTimeMillis();
+			this.counted = counters();
+			this.startedNanos = System.nanoTime();
+		}
+
+		/**
+		 * @return The name of the stage.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Ends the stage. Closing it again does nothing.
+		 */
+		@Override
+		public void close()
+		{
+			synchronized(Metrics.this)
+			{
+				if(nanos >= 0)
+					return;
+				nanos = System.nanoTime() - startedNanos;
+				long[] now = counters();
+				for(int i = 0; i < counted.length; i++)
+					counted[i] = Math.max(0, now[i] - counted[i]); // 0 if the counters were reset while it ran
+				heapHighWater = getHeapHighWater();
+				running.remove(this);
+				finished.add(this);
+			}
+			FlightRecorder.commit(event, name, counted, heapHighWater);
+		}
+	}
+}
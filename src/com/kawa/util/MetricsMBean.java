@@ -0,0 +1,59 @@
+package com.kawa.util;
+
+/**
+ * What {@link Metrics} shows through JMX, as the MBean <code>com.kawa.kinch:type=Metrics</code>. Every counter is the total since the run
+ * started.
+ * @author Kawa
+ */
+public interface MetricsMBean
+{
+	/**
+	 * @return How long the run has taken so far, in milliseconds.
+	 */
+	long getRunMillis();
+
+	/**
+	 * @return The stages that are running right now.
+	 */
+	String[] getRunningStages();
+
+	/**
+	 * @return The stages that have finished, in the order they finished.
+	 */
+	String[] getStageNames();
+
+	/**
+	 * @return How long each stage of {@link #getStageNames()} took, in milliseconds.
+	 */
+	long[] getStageMillis();
+
+	/**
+	 * @return The amount of lines of the ranks files that were scanned.
+	 */
+	long getRowsScanned();
+
+	/**
+	 * @return The amount of scanned lines that were results being looked for.
+	 */
+	long getRowsMatched();
+
+	/**
+	 * @return The amount of bytes of the database that were downloaded.
+	 */
+	long getBytesDownloaded();
+
+	/**
+	 * @return The amount of bytes that were inflated out of the database .zip file.
+	 */
+	long getBytesInflated();
+
+	/**
+	 * @return The amount of bytes of the ranks files that were scanned.
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return The most the heap has held since the run started, in bytes.
+	 */
+	long getHeapHighWater();
+}
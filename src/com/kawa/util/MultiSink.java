@@ -0,0 +1,149 @@
+package com.kawa.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Hands every field to several {@link RowSink}s, so one ranking can be written to several files, in several formats, at once.
+ * @author Kawa
+ */
+public class MultiSink implements RowSink
+{
+	private final RowSink[] sinks;
+
+	/**
+	 * @param sinks The sinks. They are closed along with this sink.
+	 */
+	public MultiSink(RowSink... sinks)
+	{
+		this.sinks = sinks.clone();
+	}
+
+	/**
+	 * Opens a sink for a file, in the format its extension asks for:
+	 * <ul>
+	 * <li><code>.jsonl</code>: {@link JsonLinesSink}</li>
+	 * <li><code>.kcol</code>: {@link ColumnarSink}</li>
+	 * <li>anything else: {@link CsvStreamWriter}</li>
+	 * </ul>
+	 * @param file The file.
+	 * @param decimals The amount of decimals numbers are written with, from 0 to {@link Util#MAX_DECIMALS}.
+	 * @return The sink.
+	 * @throws IOException
+	 */
+	public static RowSink open(File file, int decimals) throws IOException
+	{
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		if(name.endsWith(".jsonl"))
+			return new JsonLinesSink(file, decimals);
+		if(name.endsWith(".kcol"))
+			return new ColumnarSink(file, decimals);
+		return new CsvStreamWriter(file, decimals);
+	}
+
+	/**
+	 * Opens a sink for each of several files (see {@link #open(File, int)}).
+	 * @param files The files.
+	 * @param decimals The amount of decimals numbers are written with, from 0 to {@link Util#MAX_DECIMALS}.
+	 * @return The sink of the only file, or a {@code MultiSink} of all of them.
+	 * @throws IOException If any of them can't be opened, in which case the ones that were are closed.
+	 */
+	public static RowSink open(List<File> files, int decimals) throws IOException
+	{
+		if(files.size() == 1)
+			return open(files.get(0), decimals);
+
+		List<RowSink> sinks = new ArrayList<RowSink>();
+		try
+		{
+			for(File file : files)
+				sinks.add(open(file, decimals));
+		}
+		catch(IOException e)
+		{
+			for(RowSink sink : sinks)
+			{
+				try
+				{
+					sink.close();
+				}
+				catch(IOException suppressed)
+				{
+					e.addSuppressed(suppressed);
+				}
+			}
+			throw e;
+		}
+		return new MultiSink(sinks.toArray(new RowSink[sinks.size()]));
+	}
+
+	@Override
+	public void writeHeader(String[] names, Type[] types) throws IOException
+	{
+		for(RowSink sink : sinks)
+			sink.writeHeader(names, types);
+	}
+
+	@Override
+	public void writeField(String value) throws IOException
+	{
+		for(RowSink sink : sinks)
+			sink.writeField(value);
+	}
+
+	@Override
+	public void writeField(double value) throws IOException
+	{
+		for(RowSink sink : sinks)
+			sink.writeField(value);
+	}
+
+	@Override
+	public void writeField(long value) throws IOException
+	{
+		for(RowSink sink : sinks)
+			sink.writeField(value);
+	}
+
+	@Override
+	public void writeEmpty() throws IOException
+	{
+		for(RowSink sink : sinks)
+			sink.writeEmpty();
+	}
+
+	@Override
+	public void endRow() throws IOException
+	{
+		for(RowSink sink : sinks)
+			sink.endRow();
+	}
+
+	/**
+	 * Closes every sink, even if some of them fail to.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		IOException failure = null;
+		for(RowSink sink : sinks)
+		{
+			try
+			{
+				sink.close();
+			}
+			catch(IOException e)
+			{
+				if(failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+			}
+		}
+		if(failure != null)
+			throw failure;
+	}
+}
@@ -0,0 +1,146 @@
+package com.kawa.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far along a stage of a run is: its name, how much of it is done and its total. Any amount of threads can add to it at the same time,
+ * since it's only counted with atomic operations, and it only tells its {@link ProgressListener} every {@link #DEFAULT_INTERVAL_MILLIS}
+ * milliseconds at most, so a loop can add to it on every pass without formatting anything or waiting on the listener.
+ * @author Kawa
+ */
+public class Progress
+{
+	/**
+	 * The least time between two updates of the listener, in milliseconds.
+	 */
+	public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+	private final ProgressListener listener;
+	private final String stage;
+	private final long total;
+	private final boolean bytes;
+	private final long intervalNanos;
+	private final AtomicLong done = new AtomicLong();
+	private final AtomicLong nextUpdate;
+	private volatile boolean finished;
+
+	/**
+	 * @param listener The listener.
+	 * @param stage The name of the stage, such as <code>Downloading database</code>.
+	 * @param total The amount there is to do, or -1 if it isn't known.
+	 * @param bytes Flags whether the amounts are bytes, which are shown in MB.
+	 */
+	public Progress(ProgressListener listener, String stage, long total, boolean bytes)
+	{
+		this.listener = listener;
+		this.stage = stage;
+		this.total = total;
+		this.bytes = bytes;
+		this.intervalNanos = DEFAULT_INTERVAL_MILLIS * 1000000;
+		this.nextUpdate = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Adds to the amount done, and tells the listener if it hasn't been told for a while.
+	 * @param amount The amount.
+	 */
+	public void add(long amount)
+	{
+		done.addAndGet(amount);
+		update();
+	}
+
+	/**
+	 * Sets the amount done, and tells the listener if it hasn't been told for a while.
+	 * @param amount The amount.
+	 */
+	public void set(long amount)
+	{
+		done.set(amount);
+		update();
+	}
+
+	/**
+	 * Tells the listener where the stage ended up, however soon after the last update.
+	 */
+	public void finish()
+	{
+		finished = true;
+		listener.progress(this);
+	}
+
+	private void update()
+	{
+		if(listener == ProgressListener.NONE)
+			return;
+		long now = System.nanoTime();
+		long next = nextUpdate.get();
+		// only the thread that moves the next update on tells the listener
+		if(now - next >= 0 && nextUpdate.compareAndSet(next, now + intervalNanos))
+			listener.progress(this);
+	}
+
+	/**
+	 * @return The name of the stage.
+	 */
+	public String getStage()
+	{
+		return stage;
+	}
+
+	/**
+	 * @return The amount done.
+	 */
+	public long getDone()
+	{
+		return done.get();
+	}
+
+	/**
+	 * @return The amount there is to do, or -1 if it isn't known.
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * @return The percentage done, from 0 to 100, or -1 if the total isn't known.
+	 */
+	public double getPercent()
+	{
+		if(total <= 0)
+			return -1;
+		return Math.min(100.0, getDone() * 100.0 / total);
+	}
+
+	/**
+	 * @return Flags whether the stage is done, either because {@link #finish()} was called or because all of the total is done.
+	 */
+	public boolean isFinished()
+	{
+		return finished || total >= 0 && getDone() >= total;
+	}
+
+	/**
+	 * @return The progress as text, such as <code>Downloading database: 12.5 MB of 40.0 MB, 31.2% completed</code>.
+	 */
+	@Override
+	public String toString()
+	{
+		long done = getDone();
+		StringBuilder text = new StringBuilder(stage).append(": ").append(amount(done));
+		if(total >= 0)
+		{
+			text.append(" of ").append(amount(total));
+			if(total > 0)
+				text.append(", ").append(Util.roundToNearestDecimal(Math.min(100.0, done * 100.0 / total), 1)).append("% completed");
+		}
+		return text.toString();
+	}
+
+	private String amount(long amount)
+	{
+		return bytes ? Util.roundToNearestDecimal(amount / 1048576.0, 2) + " MB" : Long.toString(amount);
+	}
+}
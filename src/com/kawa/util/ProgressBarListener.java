@@ -0,0 +1,46 @@
+package com.kawa.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+/**
+ * Shows progress in a Swing {@link JProgressBar}. The bar is only touched on the Swing event thread, and updates that come in while one is
+ * still waiting to be shown are folded into it, so the bar only ever shows the latest progress.
+ * @author Kawa
+ */
+public class ProgressBarListener implements ProgressListener
+{
+	private final JProgressBar bar;
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private volatile Progress latest;
+
+	/**
+	 * @param bar The progress bar.
+	 */
+	public ProgressBarListener(JProgressBar bar)
+	{
+		this.bar = bar;
+	}
+
+	@Override
+	public void progress(Progress progress)
+	{
+		latest = progress;
+		if(!scheduled.compareAndSet(false, true))
+			return;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run()
+			{
+				scheduled.set(false);
+				Progress progress = latest;
+				double percent = progress.getPercent();
+				bar.setIndeterminate(percent < 0);
+				bar.setValue(percent < 0 ? 0 : (int) percent);
+				bar.setString(progress.toString());
+			}
+		});
+	}
+}
@@ -0,0 +1,30 @@
+package com.kawa.util;
+
+/**
+ * Receives how far along a stage of a run is, such as a download. It's told through a {@link Progress}, which holds the stage, how much of
+ * it is done and its total, and only tells it every so often, no matter how many threads are adding to it. The listeners are:<br><br>
+ *
+ * {@link ProgressBarListener}: shows it in a Swing progress bar<br>
+ * {@link ConsoleProgress}: shows it on a single line of the console<br>
+ * {@link #NONE}: ignores it
+ * @author Kawa
+ */
+public interface ProgressListener
+{
+	/**
+	 * A listener that ignores the progress, for runs that don't show it.
+	 */
+	ProgressListener NONE = new ProgressListener() {
+		@Override
+		public void progress(Progress progress)
+		{
+		}
+	};
+
+	/**
+	 * Receives the progress of a stage. This may be called from any thread, but never more often than the progress's interval, unless the
+	 * stage is finished.
+	 * @param progress The progress, which may have moved on by the time it's read.
+	 */
+	void progress(Progress progress);
+}
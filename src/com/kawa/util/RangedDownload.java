@@ -0,0 +1,312 @@
+package com.kawa.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a file as several byte ranges at the same time, and outputs its progress to a {@link ProgressListener}.<br><br>
+ *
+ * The server is first asked whether it accepts ranges. If it does, the file is preallocated next to where it is going (as
+ * <code>file.part</code>) and each segment is written straight into its place. How far each segment has got is kept in
+ * <code>file.segments</code>, so a download that is interrupted carries on from where it stopped the next time, as long as the file hasn't
+ * changed on the server. If the server doesn't accept ranges, or doesn't answer the HEAD request that asks, the file is downloaded as a
+ * single stream with {@link Download}.<br><br>
+ *
+ * Like {@link Download#downloadFileIfModified()}, a file that hasn't changed since the last download isn't downloaded again.
+ * @author Kawa
+ */
+public class RangedDownload
+{
+	/**
+	 * How much of a segment is downloaded between each time its progress is saved.
+	 */
+	private static final long SAVE_EVERY = 4 << 20;
+
+	private File file;
+	private URL url;
+	private ProgressListener listener;
+	private int segments;
+
+	/**
+	 * The state of an unfinished download, saved to {@link #getStateFile()}.
+	 */
+	private Properties state;
+
+	/**
+	 * The preallocated file that the segments are written into, while they are being downloaded.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * @param url The URL of the file.
+	 * @param file Where to download it to.
+	 * @param listener Receives the progress of the download.
+	 * @param segments The amount of ranges to download at the same time.
+	 */
+	public RangedDownload(URL url, File file, ProgressListener listener, int segments)
+	{
+		this.url = url;
+		this.file = file;
+		this.listener = listener;
+		this.segments = Math.max(1, segments);
+	}
+
+	/**
+	 * Downloads the file, unless the copy already downloaded is still the same as the one on the server.
+	 * @return {@code true} if the file was downloaded, or {@code false} if the copy already downloaded was kept.
+	 * @throws IOException
+	 */
+	public boolean downloadFileIfModified() throws IOException
+	{
+		Download single = new Download(url, file, listener);
+		Properties metadata = Download.readProperties(single.getMetadataFile());
+
+		HttpURLConnection probe = (HttpURLConnection) url.openConnection();
+		probe.setRequestMethod("HEAD");
+		if(file.isFile() && file.length() == Long.parseLong(metadata.getProperty("length", "-1")))
+		{
+			if(metadata.getProperty("etag") != null)
+				probe.setRequestProperty("If-None-Match", metadata.getProperty("etag"));
+			if(metadata.getProperty("lastModified") != null)
+				probe.setRequestProperty("If-Modified-Since", metadata.getProperty("lastModified"));
+		}
+
+		int code = probe.getResponseCode();
+		if(code == HttpURLConnection.HTTP_NOT_MODIFIED)
+			return false;
+		if(code != 200)
+		{
+			// plenty of servers refuse HEAD (405, 403, 501) but still serve the file
+			probe.disconnect();
+			System.out.println(">> The server didn't answer the HEAD request (HTTP " + code + "), downloading as a single stream");
+			return single.downloadFileIfModified();
+		}
+
+		long size = probe.getContentLengthLong();
+		String etag = probe.getHeaderField("ETag");
+		String lastModified = probe.getHeaderField("Last-Modified");
+		boolean ranges = "bytes".equalsIgnoreCase(probe.getHeaderField("Accept-Ranges"));
+		probe.disconnect();
+
+		// a weak ETag never matches If-Range, so every segment would get the whole file back
+		String validator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+		if(!ranges || size <= 0 || segments == 1 || validator == null)
+		{
+			if(!ranges)
+				System.out.println(">> The server doesn't accept ranges, downloading as a single stream");
+			else if(validator == null)
+				System.out.println(">> The server gave nothing to resume from, downloading as a single stream");
+			return single.downloadFileIfModified();
+		}
+
+		downloadRanges(size, etag, lastModified, validator);
+
+		metadata = new Properties();
+		if(etag != null)
+			metadata.setProperty("etag", etag);
+		if(lastModified != null)
+			metadata.setProperty("lastModified", lastModified);
+		metadata.setProperty("length", Long.toString(size));
+		single.getMetadataFile().delete();
+		Download.move(getPartFile(), file);
+		Download.writeProperties(single.getMetadataFile(), metadata, url.toString());
+		getStateFile().delete();
+		return true;
+	}
+
+	/**
+	 * Downloads all the segments into the preallocated file, carrying on from the saved state if it is for the same file.
+	 * @param size The size of the file.
+	 * @param etag The ETag of the file, if there is one.
+	 * @param lastModified The Last-Modified date of the file, if there is one.
+	 * @param validator The strong ETag or the Last-Modified date that the file must still have, sent as If-Range.
+	 * @throws IOException
+	 */
+	private void downloadRanges(final long size, String etag, String lastModified, final String validator) throws IOException
+	{
+		state = Download.readProperties(getStateFile());
+		boolean resume = getPartFile().isFile()
+				&& Long.toString(size).equals(state.getProperty("length"))
+				&& (etag == null ? "" : etag).equals(state.getProperty("etag"))
+				&& (lastModified == null ? "" : lastModified).equals(state.getProperty("lastModified"));
+
+		if(!resume)
+		{
+			state = new Properties();
+			state.setProperty("length", Long.toString(size));
+			state.setProperty("etag", etag == null ? "" : etag);
+			state.setProperty("lastModified", lastModified == null ? "" : lastModified);
+			state.setProperty("segments", Integer.toString(segments));
+			for(int i = 0; i < segments; i++)
+			{
+				long start = size * i / segments;
+				state.setProperty("segment." + i + ".start", Long.toString(start));
+				state.setProperty("segment." + i + ".end", Long.toString(size * (i + 1) / segments));
+				state.setProperty("segment." + i + ".done", Long.toString(start));
+			}
+			try(RandomAccessFile raf = new RandomAccessFile(getPartFile(), "rw"))
+			{
+				raf.setLength(size);
+			}
+			saveState();
+		}
+		else
+		{
+			System.out.println(">> Resuming the download from where it stopped");
+		}
+
+		final Progress progress = new Progress(listener, "Downloading " + file.getName(), size, true);
+		int count = Integer.parseInt(state.getProperty("segments"));
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int i = 0; i < count; i++)
+		{
+			final int segment = i;
+			progress.add(getSegment(i, "done") - getSegment(i, "start"));
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException
+				{
+					downloadSegment(segment, validator, size, progress);
+					return null;
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		try(RandomAccessFile raf = new RandomAccessFile(getPartFile(), "rw"))
+		{
+			channel = raf.getChannel();
+			for(Future<Void> future : executor.invokeAll(tasks))
+				future.get();
+			progress.finish();
+		}
+		catch(InterruptedException e)
+		{
+			throw new IOException("Interrupted while downloading " + url, e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Error downloading " + url, e.getCause());
+		}
+		finally
+		{
+			executor.shutdown();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Downloads what is left of one segment.
+	 * @param segment The segment.
+	 * @param validator The strong ETag or Last-Modified date that the file must still have, sent as If-Range.
+	 * @param size The size of the file.
+	 * @param progress The progress of the whole file, shared by all the segments.
+	 * @throws IOException
+	 */
+	private void downloadSegment(int segment, String validator, long size, Progress progress) throws IOException
+	{
+		long position = getSegment(segment, "done");
+		long end = getSegment(segment, "end");
+		if(position >= end)
+			return;
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestProperty("Range", "bytes=" + position + "-" + (end - 1));
+		connection.setRequestProperty("If-Range", validator);
+
+		if(connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+		{
+			connection.disconnect();
+			throw new IOException("The file changed on the server while it was being downloaded! HTTP reponse code returned: " + connection.getResponseCode());
+		}
+
+		byte[] data = new byte[64 * 1024];
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		long saved = position;
+		try(InputStream in = connection.getInputStream())
+		{
+			int i;
+			while(position < end && (i = in.read(data, 0, (int) Math.min(data.length, end - position))) != -1)
+			{
+				buffer.clear().limit(i);
+				while(buffer.hasRemaining())
+					position += channel.write(buffer, position);
+				Metrics.get().addDownloaded(i);
+
+				progress.add(i);
+				if(position - saved >= SAVE_EVERY)
+				{
+					setSegment(segment, position);
+					saved = position;
+				}
+			}
+		}
+		finally
+		{
+			setSegment(segment, position);
+		}
+
+		if(position < end)
+			throw new IOException("The download of bytes " + getSegment(segment, "start") + "-" + end + " ended early, it will resume from " + position + " next time");
+	}
+
+	private synchronized long getSegment(int segment, String key)
+	{
+		return Long.parseLong(state.getProperty("segment." + segment + "." + key));
+	}
+
+	/**
+	 * Records how far a segment has got, and saves the state.
+	 * @param segment The segment.
+	 * @param done The position up to which it has been downloaded.
+	 * @throws IOException
+	 */
+	private synchronized void setSegment(int segment, long done) throws IOException
+	{
+		channel.force(false);
+		state.setProperty("segment." + segment + ".done", Long.toString(done));
+		saveState();
+	}
+
+	private synchronized void saveState() throws IOException
+	{
+		Download.writeProperties(getStateFile(), state, url.toString());
+	}
+
+	/**
+	 * @return The preallocated file the segments are written into, which replaces the file once every segment is done.
+	 */
+	public File getPartFile()
+	{
+		return new File(file.getPath() + ".part");
+	}
+
+	/**
+	 * @return The file that records how far each segment has got.
+	 */
+	public File getStateFile()
+	{
+		return new File(file.getPath() + ".segments");
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+}
@@ -0,0 +1,62 @@
+package com.kawa.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives a table a field at a time, such as a ranking being written to a file. The header is given first, then each row's fields from the
+ * first column to the last, each row followed by {@link #endRow()}. Nothing is kept between rows, so a sink uses the same memory no matter
+ * how many rows it is given.
+ * @author Kawa
+ */
+public interface RowSink extends Closeable
+{
+	/**
+	 * The type of a column.
+	 */
+	enum Type
+	{
+		TEXT, INTEGER, DECIMAL
+	}
+
+	/**
+	 * Starts the table. This is called once, before any fields.
+	 * @param names The name of each column.
+	 * @param types The type of each column.
+	 * @throws IOException
+	 */
+	void writeHeader(String[] names, Type[] types) throws IOException;
+
+	/**
+	 * Writes the next field of a {@link Type#TEXT} column.
+	 * @param value The text.
+	 * @throws IOException
+	 */
+	void writeField(String value) throws IOException;
+
+	/**
+	 * Writes the next field of a {@link Type#DECIMAL} column.
+	 * @param value The number.
+	 * @throws IOException
+	 */
+	void writeField(double value) throws IOException;
+
+	/**
+	 * Writes the next field of an {@link Type#INTEGER} or {@link Type#DECIMAL} column.
+	 * @param value The number.
+	 * @throws IOException
+	 */
+	void writeField(long value) throws IOException;
+
+	/**
+	 * Writes the next field as having no value, in a column of any type.
+	 * @throws IOException
+	 */
+	void writeEmpty() throws IOException;
+
+	/**
+	 * Ends the current row.
+	 * @throws IOException
+	 */
+	void endRow() throws IOException;
+}
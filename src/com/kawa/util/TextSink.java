@@ -0,0 +1,112 @@
+package com.kawa.util;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The buffering shared by the {@link RowSink}s that write text. Characters go straight into a {@code char} buffer, which is only handed to
+ * the {@link Writer} when it fills up, and numbers are written by {@link Util#formatDecimal(double, int, char[], int)}, so writing a row
+ * doesn't make any objects.
+ * @author Kawa
+ */
+abstract class TextSink implements RowSink, Flushable
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Writer out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+
+	/**
+	 * The amount of decimals numbers are written with.
+	 */
+	protected final int decimals;
+
+	/**
+	 * @param out Where the text is written to. It is closed along with this sink.
+	 * @param decimals The amount of decimals numbers are written with, from 0 to {@link Util#MAX_DECIMALS}.
+	 */
+	protected TextSink(Writer out, int decimals)
+	{
+		if(decimals < 0 || decimals > Util.MAX_DECIMALS)
+			throw new IllegalArgumentException("Numbers can be written with 0 to " + Util.MAX_DECIMALS + " decimals, not " + decimals);
+		this.out = out;
+		this.decimals = decimals;
+	}
+
+	protected void put(char c) throws IOException
+	{
+		if(position == buffer.length)
+			drain();
+		buffer[position++] = c;
+	}
+
+	protected void put(char[] chars) throws IOException
+	{
+		if(buffer.length - position < chars.length)
+		{
+			drain();
+			if(chars.length > buffer.length)
+			{
+				out.write(chars);
+				return;
+			}
+		}
+		System.arraycopy(chars, 0, buffer, position, chars.length);
+		position += chars.length;
+	}
+
+	/**
+	 * Writes a number with this sink's amount of decimals.
+	 */
+	protected void putDecimal(double value) throws IOException
+	{
+		reserve(26 + decimals);
+		position = Util.formatDecimal(value, decimals, buffer, position);
+	}
+
+	/**
+	 * Writes a whole number.
+	 */
+	protected void putLong(long value) throws IOException
+	{
+		reserve(20);
+		position = Util.formatLong(value, buffer, position);
+	}
+
+	/**
+	 * Makes sure there is room for a number of characters in the buffer.
+	 */
+	private void reserve(int length) throws IOException
+	{
+		if(buffer.length - position < length)
+			drain();
+	}
+
+	private void drain() throws IOException
+	{
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		drain();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			drain();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -5,7 +5,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -14,14 +31,36 @@ import java.util.zip.ZipInputStream;
  */
 public class Util 
 {
+	/**
+	 * The most decimals {@link #formatDecimal(double, int, char[], int)} can write.
+	 */
+	public static final int MAX_DECIMALS = 15;
+	
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+	
 	/**
 	 * Deletes the database files after use.
 	 * @param clearCsv Flags whether or not to clear the previous generated CSV.
 	 */
 	public static void clean(boolean clearCsv)
 	{
-		new File("." + File.separator + "WCA_export.tsv.zip").delete();
-		new File("." + File.separator + "exports").delete();
+		clean(true, clearCsv);
+	}
+	
+	/**
+	 * Deletes the database files and/or the previous generated CSV.
+	 * @param clearDatabase Flags whether or not to clear the downloaded database, which is otherwise kept to avoid downloading it again.
+	 * @param clearCsv Flags whether or not to clear the previous generated CSV.
+	 */
+	public static void clean(boolean clearDatabase, boolean clearCsv)
+	{
+		if(clearDatabase)
+		{
+			new File("." + File.separator + "WCA_export.tsv.zip").delete();
+			new File("." + File.separator + "WCA_export.tsv.zip.properties").delete();
+			new File("." + File.separator + "kinch.snapshot").delete();
+			new File("." + File.separator + "exports").delete();
+		}
 		if(clearCsv) new File("." + File.separator + "kinch.csv").delete();
 	}
 	
@@ -84,6 +123,144 @@ public class Util
 		}
 	}
 	
+	/**
+	 * The size of the buffers used to extract and check the entries of a .zip file.
+	 */
+	private static final int EXTRACT_BUFFER = 1 << 20;
+	
+	/**
+	 * Expands only some of the entries of a .zip file. The entries are inflated in parallel, straight from their place in the .zip file, and written
+	 * through {@link FileChannel}s with large direct buffers. An entry whose extracted copy already has the same size and CRC is skipped.
+	 * The time taken by each entry is printed out.
+	 * @param zipFile The .zip file.
+	 * @param outputFolder The output folder.
+	 * @param filter Decides which entries, by name, to extract.
+	 * @param threads The amount of entries to extract at the same time.
+	 * @throws IOException
+	 */
+	public static void unzipFile(File zipFile, final File outputFolder, Predicate<String> filter, int threads) throws IOException
+	{
+		if(!outputFolder.exists())
+		{
+			outputFolder.mkdirs();
+		}
+		final String folderPath = outputFolder.getCanonicalPath() + File.separator;
+		
+		try(final ZipFile zip = new ZipFile(zipFile))
+		{
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while(entries.hasMoreElements())
+			{
+				final ZipEntry entry = entries.nextElement();
+				if(entry.isDirectory() || !filter.test(entry.getName()))
+					continue;
+				
+				final File target = new File(folderPath + entry.getName());
+				if(!target.getCanonicalPath().startsWith(folderPath))
+					throw new IOException(entry.getName() + " would be extracted outside of " + outputFolder);
+				
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException
+					{
+						extractEntry(zip, entry, target);
+						return null;
+					}
+				});
+			}
+			
+			if(tasks.isEmpty())
+				return;
+			
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+			try
+			{
+				for(Future<Void> future : executor.invokeAll(tasks))
+					future.get();
+			}
+			catch(InterruptedException e)
+			{
+				throw new IOException("Interrupted while extracting " + zipFile, e);
+			}
+			catch(ExecutionException e)
+			{
+				if(e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException("Error extracting " + zipFile, e.getCause());
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Extracts a single entry of a .zip file, unless the file it would be extracted to already matches it.
+	 * @param zip The .zip file.
+	 * @param entry The entry.
+	 * @param target The file it is extracted to.
+	 * @throws IOException
+	 */
+	private static void extractEntry(ZipFile zip, ZipEntry entry, File target) throws IOException
+	{
+		long start = System.nanoTime();
+		if(matches(entry, target))
+		{
+			System.out.println(">> Skipped " + entry.getName() + ", already extracted (checked in " + (System.nanoTime() - start) / 1000000 + " ms)");
+			return;
+		}
+		
+		File parent = target.getParentFile();
+		if(parent != null && !parent.exists())
+			parent.mkdirs();
+		
+		long written = 0;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(EXTRACT_BUFFER);
+		try(InputStream in = zip.getInputStream(entry); ReadableByteChannel source = Channels.newChannel(in);
+				FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			while(source.read(buffer) != -1)
+			{
+				buffer.flip();
+				int inflated = buffer.remaining();
+				while(buffer.hasRemaining())
+					written += out.write(buffer);
+				Metrics.get().addInflated(inflated);
+				buffer.clear();
+			}
+		}
+		
+		System.out.println(">> Extracted " + entry.getName() + ", " + roundToNearestDecimal(written / 1048576.0, 2) + " MB in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+	
+	/**
+	 * Checks whether a file is already an extracted copy of a .zip entry, by comparing their sizes and then their CRCs.
+	 * @param entry The entry.
+	 * @param file The file.
+	 * @return Whether they match.
+	 * @throws IOException
+	 */
+	private static boolean matches(ZipEntry entry, File file) throws IOException
+	{
+		if(!file.isFile() || entry.getSize() < 0 || entry.getCrc() < 0 || file.length() != entry.getSize())
+			return false;
+		
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(EXTRACT_BUFFER);
+		try(FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			while(in.read(buffer) != -1)
+			{
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue() == entry.getCrc();
+	}
+	
 	/**
 	 * Rounds a number to the nearest nth decimal.
 	 * @param input The number
@@ -167,6 +344,142 @@ public class Util
 		return comparison;
 	}
 	
+	/**
+	 * Sorts the positions of a {@code double} array from its highest value to its lowest, without moving the values. Positions with the same
+	 * value stay in the order they were in, so ties are broken by position.
+	 * @param keys The values.
+	 * @return The positions, from the highest value to the lowest.
+	 */
+	public static int[] sortDescending(double[] keys)
+	{
+		int[] order = new int[keys.length];
+		for(int i = 0; i < order.length; i++)
+			order[i] = i;
+		mergeSort(order, order.clone(), 0, order.length, keys);
+		return order;
+	}
+	
+	/**
+	 * Sorts {@code order[from, to)} by merging the sorted halves of {@code buffer}, which starts out as a copy of {@code order}. Short
+	 * ranges are insertion sorted instead.
+	 */
+	private static void mergeSort(int[] order, int[] buffer, int from, int to, double[] keys)
+	{
+		if(to - from <= 32)
+		{
+			for(int i = from + 1; i < to; i++)
+			{
+				int position = order[i];
+				int j = i - 1;
+				while(j >= from && Double.compare(keys[order[j]], keys[position]) < 0)
+				{
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = position;
+			}
+			return;
+		}
+		
+		int middle = (from + to) >>> 1;
+		mergeSort(buffer, order, from, middle, keys);
+		mergeSort(buffer, order, middle, to, keys);
+		
+		// the halves are already in order
+		if(Double.compare(keys[buffer[middle - 1]], keys[buffer[middle]]) >= 0)
+		{
+			System.arraycopy(buffer, from, order, from, to - from);
+			return;
+		}
+		
+		int left = from;
+		int right = middle;
+		for(int i = from; i < to; i++)
+		{
+			if(right >= to || (left < middle && Double.compare(keys[buffer[left]], keys[buffer[right]]) >= 0))
+				order[i] = buffer[left++];
+			else
+				order[i] = buffer[right++];
+		}
+	}
+	
+	/**
+	 * Writes a number with a fixed amount of decimals into a {@code char} array, without making any objects. Trailing zeros are left off,
+	 * down to a single decimal, so 100 is written as <code>100.0</code> just like {@link Double#toString(double)}. Numbers that are too
+	 * large to be written this way, and NaN and infinity, are written by {@link Double#toString(double)} instead.
+	 * @param value The number.
+	 * @param decimals The amount of decimals, from 0 to {@link #MAX_DECIMALS}.
+	 * @param buffer The array, which needs at least {@code 26 + decimals} free spaces from {@code offset}.
+	 * @param offset The position of the first character.
+	 * @return The position after the last character.
+	 */
+	public static int formatDecimal(double value, int decimals, char[] buffer, int offset)
+	{
+		double scaled = Math.abs(value) * POWERS_OF_TEN[decimals];
+		if(!(scaled < 1e15))
+		{
+			String text = Double.toString(value);
+			text.getChars(0, text.length(), buffer, offset);
+			return offset + text.length();
+		}
+		
+		long digits = Math.round(scaled);
+		if(value < 0 && digits != 0)
+			buffer[offset++] = '-';
+		
+		long power = (long) POWERS_OF_TEN[decimals];
+		offset = formatLong(digits / power, buffer, offset);
+		if(decimals == 0)
+			return offset;
+		
+		long fraction = digits % power;
+		int length = decimals;
+		while(length > 1 && fraction % 10 == 0)
+		{
+			fraction /= 10;
+			length--;
+		}
+		buffer[offset] = '.';
+		for(int i = offset + length; i > offset; i--)
+		{
+			buffer[i] = (char) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		return offset + length + 1;
+	}
+	
+	/**
+	 * Writes a whole number into a {@code char} array, without making any objects.
+	 * @param value The number.
+	 * @param buffer The array, which needs at least 20 free spaces from {@code offset}.
+	 * @param offset The position of the first character.
+	 * @return The position after the last character.
+	 */
+	public static int formatLong(long value, char[] buffer, int offset)
+	{
+		if(value == Long.MIN_VALUE)
+		{
+			String text = Long.toString(value);
+			text.getChars(0, text.length(), buffer, offset);
+			return offset + text.length();
+		}
+		if(value < 0)
+		{
+			buffer[offset++] = '-';
+			value = -value;
+		}
+		
+		int length = 1;
+		for(long rest = value / 10; rest != 0; rest /= 10)
+			length++;
+		for(int i = offset + length - 1; i >= offset; i--)
+		{
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + length;
+	}
+	
 	/**
 	 * Transposes a two-dimensional array.
 	 * @param input The array to transpose.
@@ -197,31 +510,37 @@ public class Util
 	 * timeInSeconds = TTTTT (99999 means unknown)<br>
 	 * missed = MM<br><br>
 	 * 
-	 * The MBLD score is calculated as (solved) + ProportionOfHourLeft ((1 hour - time) / 1 hour). 
+	 * Results from before 2009 are in the old form of <code>1SSAATTTTT</code>, where solved = 99 - SS, attempted = AA and timeInSeconds = TTTTT,
+	 * so the difference is solved - (attempted - solved).<br><br>
+	 * 
+	 * The MBLD score is calculated as (difference) + ProportionOfHourLeft ((1 hour - time) / 1 hour). The digits are found by
+	 * division, so nothing is allocated.
 	 * @param input The MBLD result.
-	 * @return The score.
+	 * @return The score, or 0 if there is no result or the difference isn't positive.
 	 */
 	public static double parseMBLD(int input)
 	{
-		if(input == 0)
-		{
+		if(input <= 0)
 			return 0;
+		
+		int difference;
+		int time;
+		if(input >= 1000000000)
+		{
+			int solved = 99 - (input / 10000000) % 100;
+			int attempted = (input / 100000) % 100;
+			time = input % 100000;
+			difference = solved - (attempted - solved);
 		}
 		else
 		{
-			String in = Integer.toString(input);
-			
-			int solved = 99 - Integer.parseInt(in.substring(0, 2));
-			int time = Integer.parseInt(in.substring(2, 7));
-			
-			if(solved <= 0)
-				return 0;
-			else
-			{
-				double hour = (3600.0 - time) / 3600.0;
-				return solved + hour;
-			}
+			difference = 99 - input / 10000000;
+			time = (input / 100) % 100000;
 		}
+		
+		if(difference <= 0)
+			return 0;
+		return difference + (3600.0 - time) / 3600.0;
 	}
 	
 	/**
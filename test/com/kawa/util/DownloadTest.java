@@ -0,0 +1,132 @@
+package com.kawa.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks {@link Download#downloadFileIfModified()} against a {@link TestServer}.
+ * @author Kawa
+ */
+public class DownloadTest
+{
+	private TestServer server;
+	private File directory;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		server = new TestServer(TestServer.file(100000, 1), "\"v1\"");
+		directory = Files.createTempDirectory("download").toFile();
+		file = new File(directory, "WCA_export.tsv.zip");
+	}
+
+	@After
+	public void tearDown()
+	{
+		server.stop();
+		for(File leftover : directory.listFiles())
+			leftover.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void keepsTheCachedCopyWhenNotModified() throws IOException
+	{
+		assertTrue(download().downloadFileIfModified());
+		Properties metadata = Download.readProperties(metadataFile());
+		assertEquals("\"v1\"", metadata.getProperty("etag"));
+		assertEquals("100000", metadata.getProperty("length"));
+		long modified = file.lastModified();
+
+		server.clearRequests();
+		assertFalse(download().downloadFileIfModified());
+		assertEquals(Arrays.asList("GET If-None-Match \"v1\""), server.getRequests());
+		assertArrayEquals(TestServer.file(100000, 1), read(file));
+		assertEquals(modified, file.lastModified());
+		assertEquals(metadata, Download.readProperties(metadataFile()));
+	}
+
+	@Test
+	public void keepsTheOldFileWhenTheBodyIsCutShort() throws IOException
+	{
+		assertTrue(download().downloadFileIfModified());
+
+		server.setFile(TestServer.file(100000, 2), "\"v2\"");
+		server.setCutAfter(40000);
+		try
+		{
+			download().downloadFileIfModified();
+			fail("A download that was cut short succeeded");
+		}
+		catch(IOException e)
+		{
+			// expected
+		}
+		assertArrayEquals(TestServer.file(100000, 1), read(file));
+		assertEquals(Arrays.asList(file.getName()), leftovers());
+	}
+
+	@Test
+	public void replacesTheFileWhenTheEtagChanges() throws IOException
+	{
+		assertTrue(download().downloadFileIfModified());
+
+		server.setFile(TestServer.file(120000, 2), "\"v2\"");
+		try(FileInputStream old = new FileInputStream(file))
+		{
+			assertTrue(download().downloadFileIfModified());
+
+			// the new file was moved over the old one rather than written into it, so what was open still reads the old file
+			byte[] kept = new byte[100000];
+			int read = 0;
+			for(int i; read < kept.length && (i = old.read(kept, read, kept.length - read)) != -1; read += i);
+			assertEquals(100000, read);
+			assertArrayEquals(TestServer.file(100000, 1), kept);
+		}
+		assertArrayEquals(TestServer.file(120000, 2), read(file));
+		assertEquals("\"v2\"", Download.readProperties(metadataFile()).getProperty("etag"));
+		assertEquals("120000", Download.readProperties(metadataFile()).getProperty("length"));
+		assertEquals(Arrays.asList(file.getName(), metadataFile().getName()), leftovers());
+	}
+
+	private Download download() throws IOException
+	{
+		return new Download(server.getUrl(), file, ProgressListener.NONE);
+	}
+
+	private File metadataFile()
+	{
+		return new File(file.getPath() + ".properties");
+	}
+
+	/**
+	 * @return The names of the files in the directory, sorted, so that any temporary file that was left behind shows up.
+	 */
+	private List<String> leftovers()
+	{
+		String[] names = directory.list();
+		Arrays.sort(names);
+		return Arrays.asList(names);
+	}
+
+	static byte[] read(File file) throws IOException
+	{
+		return Files.readAllBytes(file.toPath());
+	}
+}
@@ -0,0 +1,228 @@
+package com.kawa.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks {@link RangedDownload#downloadFileIfModified()} against a {@link TestServer}: resuming from the saved segments, starting over
+ * when the file changes, only sending a strong ETag as If-Range, and falling back to a single stream.
+ * @author Kawa
+ */
+public class RangedDownloadTest
+{
+	private static final int SIZE = 1000000;
+	private static final int SEGMENTS = 4;
+
+	private TestServer server;
+	private File directory;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		server = new TestServer(TestServer.file(SIZE, 1), "\"v1\"");
+		directory = Files.createTempDirectory("ranged").toFile();
+		file = new File(directory, "WCA_export.tsv.zip");
+	}
+
+	@After
+	public void tearDown()
+	{
+		server.stop();
+		for(File leftover : directory.listFiles())
+			leftover.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void downloadsInRangesAndThenKeepsTheCachedCopy() throws IOException
+	{
+		assertTrue(download().downloadFileIfModified());
+		assertArrayEquals(TestServer.file(SIZE, 1), DownloadTest.read(file));
+		assertEquals(ranges(0, 250000, 500000, 750000), gets());
+		assertEquals(Arrays.asList(file.getName(), file.getName() + ".properties"), files());
+
+		server.clearRequests();
+		assertFalse(download().downloadFileIfModified());
+		assertEquals(Arrays.asList("HEAD If-None-Match \"v1\""), server.getRequests());
+	}
+
+	@Test
+	public void resumesFromTheSavedSegments() throws IOException
+	{
+		server.setCutAfter(50000);
+		interrupted();
+		Properties state = Download.readProperties(new File(file.getPath() + ".segments"));
+		List<String> expected = new ArrayList<String>();
+		for(int i = 0; i < SEGMENTS; i++)
+		{
+			long done = Long.parseLong(state.getProperty("segment." + i + ".done"));
+			long end = Long.parseLong(state.getProperty("segment." + i + ".end"));
+			assertTrue("segment " + i + " didn't get anywhere", done > Long.parseLong(state.getProperty("segment." + i + ".start")));
+			if(done < end)
+				expected.add("GET bytes=" + done + "-" + (end - 1));
+		}
+
+		server.setCutAfter(-1);
+		server.clearRequests();
+		assertTrue(download().downloadFileIfModified());
+		assertEquals(expected, gets());
+		assertArrayEquals(TestServer.file(SIZE, 1), DownloadTest.read(file));
+		assertEquals(Arrays.asList(file.getName(), file.getName() + ".properties"), files());
+	}
+
+	@Test
+	public void startsOverWhenAnInterruptedDownloadIsOutOfDate() throws IOException
+	{
+		server.setCutAfter(50000);
+		interrupted();
+
+		server.setFile(TestServer.file(SIZE, 2), "\"v2\"");
+		server.setCutAfter(-1);
+		server.clearRequests();
+		assertTrue(download().downloadFileIfModified());
+		assertEquals(ranges(0, 250000, 500000, 750000), gets());
+		assertArrayEquals(TestServer.file(SIZE, 2), DownloadTest.read(file));
+	}
+
+	@Test
+	public void startsOverWhenTheFileChangesDuringTheDownload() throws IOException
+	{
+		// the segments ask with If-Range for the file the HEAD request was answered about, and get the whole new file instead
+		server.setFileAfterHead(TestServer.file(SIZE, 2), "\"v2\"");
+		interrupted();
+		assertFalse(file.exists());
+
+		server.clearRequests();
+		assertTrue(download().downloadFileIfModified());
+		assertEquals(ranges(0, 250000, 500000, 750000), gets());
+		assertArrayEquals(TestServer.file(SIZE, 2), DownloadTest.read(file));
+	}
+
+	@Test
+	public void resumesWithLastModifiedWhenTheEtagIsWeak() throws IOException
+	{
+		server.setFile(TestServer.file(SIZE, 1), "W/\"v1\"");
+		assertTrue(download().downloadFileIfModified());
+		assertEquals(ranges(0, 250000, 500000, 750000), gets());
+		assertArrayEquals(TestServer.file(SIZE, 1), DownloadTest.read(file));
+	}
+
+	@Test
+	public void fallsBackToASingleStreamWithOnlyAWeakEtag() throws IOException
+	{
+		server.setFile(TestServer.file(SIZE, 1), "W/\"v1\"");
+		server.setLastModified(null);
+		assertTrue(download().downloadFileIfModified());
+		assertEquals(Arrays.asList("HEAD", "GET"), server.getRequests());
+		assertArrayEquals(TestServer.file(SIZE, 1), DownloadTest.read(file));
+	}
+
+	@Test
+	public void fallsBackToASingleStreamWithoutRanges() throws IOException
+	{
+		server.setAcceptRanges(false);
+		assertTrue(download().downloadFileIfModified());
+		assertEquals(Arrays.asList("HEAD", "GET"), server.getRequests());
+		assertArrayEquals(TestServer.file(SIZE, 1), DownloadTest.read(file));
+		assertEquals(Arrays.asList(file.getName(), file.getName() + ".properties"), files());
+	}
+
+	@Test
+	public void fallsBackToASingleStreamWhenHeadIsRefused() throws IOException
+	{
+		for(int code : new int[] {403, 405, 501})
+		{
+			file.delete();
+			server.setHeadStatus(code);
+			server.clearRequests();
+			assertTrue(download().downloadFileIfModified());
+			assertEquals(Arrays.asList("HEAD", "GET"), server.getRequests());
+			assertArrayEquals(TestServer.file(SIZE, 1), DownloadTest.read(file));
+		}
+	}
+
+	private RangedDownload download()
+	{
+		return new RangedDownload(server.getUrl(), file, ProgressListener.NONE, SEGMENTS);
+	}
+
+	/**
+	 * Downloads the file, expecting it to fail and leave an unfinished download behind.
+	 * @throws IOException
+	 */
+	private void interrupted() throws IOException
+	{
+		try
+		{
+			download().downloadFileIfModified();
+			fail("An interrupted download succeeded");
+		}
+		catch(IOException e)
+		{
+			// expected
+		}
+		assertTrue(new File(file.getPath() + ".part").isFile());
+		assertTrue(new File(file.getPath() + ".segments").isFile());
+	}
+
+	/**
+	 * @return The GET requests so far, sorted, since the segments are asked for at the same time.
+	 */
+	private List<String> gets()
+	{
+		List<String> gets = new ArrayList<String>();
+		for(String request : server.getRequests())
+			if(request.startsWith("GET"))
+				gets.add(request);
+		Collections.sort(gets, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b)
+			{
+				return Long.compare(start(a), start(b));
+			}
+		});
+		return gets;
+	}
+
+	private static long start(String get)
+	{
+		return Long.parseLong(get.substring("GET bytes=".length(), get.indexOf('-')));
+	}
+
+	/**
+	 * @param starts Where each segment starts.
+	 * @return The GET requests of a download of every segment from its start.
+	 */
+	private static List<String> ranges(int... starts)
+	{
+		List<String> ranges = new ArrayList<String>();
+		for(int i = 0; i < starts.length; i++)
+			ranges.add("GET bytes=" + starts[i] + "-" + ((i + 1 < starts.length ? starts[i + 1] : SIZE) - 1));
+		return ranges;
+	}
+
+	private List<String> files()
+	{
+		String[] names = directory.list();
+		Arrays.sort(names);
+		return Arrays.asList(names);
+	}
+}
@@ -0,0 +1,237 @@
+package com.kawa.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stand-in for the WCA's server, which serves one file on a local port and answers conditional and ranged requests the way a real server
+ * does. It can also be told to misbehave: to refuse HEAD requests, to not accept ranges, to cut its responses short, or to change the
+ * file right after it has been asked about it.
+ * @author Kawa
+ */
+class TestServer
+{
+	private final HttpServer server;
+	private volatile byte[] body;
+	private volatile String etag;
+	private volatile String lastModified = "Sat, 01 Oct 2016 00:00:00 GMT";
+	private volatile boolean acceptRanges = true;
+	private volatile int headStatus;
+	private volatile int cutAfter = -1;
+	private volatile byte[] nextBody;
+	private volatile String nextEtag;
+	private final List<String> requests = new ArrayList<String>();
+
+	/**
+	 * Starts serving a file on a free port.
+	 * @param body The file.
+	 * @param etag Its ETag.
+	 * @throws IOException
+	 */
+	TestServer(byte[] body, String etag) throws IOException
+	{
+		this.body = body;
+		this.etag = etag;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				try
+				{
+					respond(exchange);
+				}
+				finally
+				{
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	private void respond(HttpExchange exchange) throws IOException
+	{
+		String method = exchange.getRequestMethod();
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+		String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		synchronized(requests)
+		{
+			requests.add(method + (range != null ? " " + range : "") + (ifNoneMatch != null ? " If-None-Match " + ifNoneMatch : ""));
+		}
+
+		byte[] file = body;
+		if(method.equals("HEAD") && headStatus != 0)
+		{
+			exchange.sendResponseHeaders(headStatus, -1);
+			return;
+		}
+		if(etag.equals(ifNoneMatch))
+		{
+			exchange.getResponseHeaders().set("ETag", etag);
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		exchange.getResponseHeaders().set("ETag", etag);
+		if(lastModified != null)
+			exchange.getResponseHeaders().set("Last-Modified", lastModified);
+		if(acceptRanges)
+			exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+		if(method.equals("HEAD"))
+		{
+			exchange.getResponseHeaders().set("Content-Length", Integer.toString(file.length));
+			exchange.sendResponseHeaders(200, -1);
+			if(nextBody != null)
+			{
+				// the file changes between the question and the download
+				body = nextBody;
+				etag = nextEtag;
+				nextBody = null;
+			}
+			return;
+		}
+
+		int start = 0;
+		int end = file.length;
+		int code = 200;
+		// a weak ETag never matches If-Range
+		boolean unchanged = ifRange == null || ifRange.equals(lastModified) || !ifRange.startsWith("W/") && ifRange.equals(etag);
+		if(acceptRanges && range != null && unchanged)
+		{
+			String[] bounds = range.substring("bytes=".length()).split("-");
+			start = Integer.parseInt(bounds[0]);
+			end = bounds.length > 1 ? Integer.parseInt(bounds[1]) + 1 : file.length;
+			code = 206;
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + file.length);
+		}
+
+		exchange.sendResponseHeaders(code, end - start);
+		OutputStream out = exchange.getResponseBody();
+		int sent = cutAfter >= 0 ? Math.min(cutAfter, end - start) : end - start;
+		out.write(file, start, sent);
+		// closing the exchange before the whole response is sent drops the connection
+		out.flush();
+	}
+
+	/**
+	 * @return The URL of the file.
+	 */
+	URL getUrl()
+	{
+		try
+		{
+			return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/WCA_export.tsv.zip");
+		}
+		catch(MalformedURLException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Replaces the file.
+	 * @param body The new file.
+	 * @param etag Its ETag.
+	 */
+	void setFile(byte[] body, String etag)
+	{
+		this.body = body;
+		this.etag = etag;
+	}
+
+	/**
+	 * Replaces the file right after the next HEAD request has been answered, as if it was published in between.
+	 * @param body The new file.
+	 * @param etag Its ETag.
+	 */
+	void setFileAfterHead(byte[] body, String etag)
+	{
+		this.nextEtag = etag;
+		this.nextBody = body;
+	}
+
+	/**
+	 * @param lastModified The Last-Modified date to send, or {@code null} to not send one.
+	 */
+	void setLastModified(String lastModified)
+	{
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @param acceptRanges Flags whether to accept ranges.
+	 */
+	void setAcceptRanges(boolean acceptRanges)
+	{
+		this.acceptRanges = acceptRanges;
+	}
+
+	/**
+	 * @param headStatus The status to answer every HEAD request with, or 0 to answer them normally.
+	 */
+	void setHeadStatus(int headStatus)
+	{
+		this.headStatus = headStatus;
+	}
+
+	/**
+	 * @param cutAfter The amount of bytes of each response to send before dropping the connection, or -1 to send all of them.
+	 */
+	void setCutAfter(int cutAfter)
+	{
+		this.cutAfter = cutAfter;
+	}
+
+	/**
+	 * @return Each request so far, as its method followed by its Range and If-None-Match headers, if it had them.
+	 */
+	List<String> getRequests()
+	{
+		synchronized(requests)
+		{
+			return new ArrayList<String>(requests);
+		}
+	}
+
+	/**
+	 * Forgets the requests so far.
+	 */
+	void clearRequests()
+	{
+		synchronized(requests)
+		{
+			requests.clear();
+		}
+	}
+
+	void stop()
+	{
+		server.stop(0);
+	}
+
+	/**
+	 * Makes a file of made-up bytes.
+	 * @param size Its size.
+	 * @param seed Changes which bytes they are.
+	 * @return The file.
+	 */
+	static byte[] file(int size, int seed)
+	{
+		byte[] file = new byte[size];
+		for(int i = 0; i < size; i++)
+			file[i] = (byte) (i * 31 + seed);
+		return file;
+	}
+}